@@ -67,7 +67,13 @@ class CategoriesFilter extends Filter {
     }
 
     private boolean hasCorrectCategoryAnnotation(Description description) {
-        List<Class<?>> categories = categories(description);
+        return shouldRun(categories(description));
+    }
+
+    /**
+     * Returns <code>true</code> if a test with the given categories should run.
+     */
+    boolean shouldRun(List<Class<?>> categories) {
         if (categories.isEmpty()) {
             // Test has no @Category annotation, is match if no included categories have been specified ...
             return includedCategories.isEmpty();
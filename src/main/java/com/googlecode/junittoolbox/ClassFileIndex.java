@@ -0,0 +1,277 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Index of all <code>*.class</code> files (except inner classes and hidden files)
+ * in a classes directory, used by {@link WildcardPatternSuite} to find
+ * its children classes without walking the whole directory tree for
+ * each wildcard pattern and each nested suite.
+ * <p>The index is kept in memory (one per classes directory) and
+ * persisted in the directory <code>junit-toolbox</code> next to the
+ * classes directory (e.g. <code>target/junit-toolbox/test-classes.index</code>
+ * for the classes directory <code>target/test-classes</code>).
+ * A directory is checked at most once per JVM -- when it is {@link #accept visited}
+ * for the first time -- and only listed again, if its modification time has changed
+ * (adding, removing, or renaming a file always changes the modification
+ * time of its directory). Directories, which are never visited, are never checked.
+ * The index file is replaced atomically, so that several JVMs (e.g. parallel
+ * surefire forks) can share it -- the last one saving it wins.
+ */
+class ClassFileIndex {
+
+    /**
+     * Visits the directories and class files of a {@link ClassFileIndex}.
+     */
+    interface Visitor {
+        /**
+         * Returns <code>true</code> if the directory with the given path (relative to
+         * the classes directory, using <code>'/'</code> as separator, <code>""</code>
+         * for the classes directory itself) might contain relevant class files
+         * (directly or in any of its sub directories).
+         */
+        boolean shouldVisit(String dirPath);
+
+        /**
+         * Called for each class file in a visited directory with
+         * its path relative to the classes directory.
+         */
+        void visitClassFile(String path);
+    }
+
+    private static final int MAGIC = 0x4A434932; // "JCI2"
+
+    /**
+     * Directories modified less than this number of milliseconds before they have
+     * been listed are listed again, because a file system with a coarse timestamp
+     * granularity might not update the modification time of a directory, which
+     * is changed again within the same tick.
+     */
+    private static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
+
+    private static final Map<File, ClassFileIndex> INSTANCES = new HashMap<>();
+
+    /**
+     * Returns the <code>ClassFileIndex</code> for the given classes directory.
+     */
+    static synchronized ClassFileIndex forClassesDir(@Nonnull File classesDir) throws IOException {
+        File canonicalClassesDir = classesDir.getCanonicalFile();
+        ClassFileIndex index = INSTANCES.get(canonicalClassesDir);
+        if (index == null) {
+            File indexFile = new File(canonicalClassesDir.getParentFile(), "junit-toolbox/" + canonicalClassesDir.getName() + ".index");
+            index = new ClassFileIndex(canonicalClassesDir, indexFile);
+            index.load();
+            INSTANCES.put(canonicalClassesDir, index);
+        }
+        return index;
+    }
+
+    private static class DirEntry {
+        final long lastModified;
+        final long listedAt;
+        final List<String> classFiles;
+        final List<String> subDirs;
+
+        DirEntry(long lastModified, long listedAt, List<String> classFiles, List<String> subDirs) {
+            this.lastModified = lastModified;
+            this.listedAt = listedAt;
+            this.classFiles = classFiles;
+            this.subDirs = subDirs;
+        }
+    }
+
+    private final File classesDir;
+    private final File indexFile;
+    /** Maps the relative path of each directory (using '/' as separator, "" for the classes directory) to its entry. */
+    private final Map<String, DirEntry> dirs = new HashMap<>();
+    /** The relative paths of all directories, which have been checked by this JVM. */
+    private final Set<String> checkedDirs = new HashSet<>();
+    private boolean changed;
+
+    /**
+     * Internal constructor, package private for testing.
+     */
+    ClassFileIndex(@Nonnull File classesDir, @Nonnull File indexFile) {
+        this.classesDir = classesDir;
+        this.indexFile = indexFile;
+    }
+
+    File getClassesDir() {
+        return classesDir;
+    }
+
+    /**
+     * Visits all class files in all directories accepted by the given <code>visitor</code>
+     * (a sub directory is only visited, if its parent directory is accepted too),
+     * saves this index afterwards, if any visited directory had to be listed again.
+     */
+    synchronized void accept(@Nonnull Visitor visitor) throws IOException {
+        if (visitor.shouldVisit("")) {
+            accept("", classesDir.toPath(), visitor);
+        }
+        if (changed) {
+            save();
+            changed = false;
+        }
+    }
+
+    private void accept(String dirPath, Path dir, Visitor visitor) throws IOException {
+        DirEntry entry = getUpToDateEntry(dirPath, dir);
+        if (entry == null) {
+            return;
+        }
+        String prefix = (dirPath.isEmpty() ? "" : dirPath + "/");
+        for (String name : entry.classFiles) {
+            visitor.visitClassFile(prefix + name);
+        }
+        for (String subDir : entry.subDirs) {
+            String subDirPath = prefix + subDir;
+            if (visitor.shouldVisit(subDirPath)) {
+                accept(subDirPath, dir.resolve(subDir), visitor);
+            }
+        }
+    }
+
+    private DirEntry getUpToDateEntry(String dirPath, Path dir) throws IOException {
+        DirEntry entry = dirs.get(dirPath);
+        if (checkedDirs.add(dirPath)) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(dir, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                attributes = null;
+            }
+            if (attributes == null || !attributes.isDirectory()) {
+                changed |= (dirs.remove(dirPath) != null);
+                return null;
+            }
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (entry == null || entry.lastModified != lastModified || lastModified > entry.listedAt - TIMESTAMP_GRANULARITY_MILLIS) {
+                entry = list(dir, lastModified);
+                dirs.put(dirPath, entry);
+                changed = true;
+            }
+        }
+        return entry;
+    }
+
+    private static DirEntry list(Path dir, long lastModified) throws IOException {
+        long listedAt = System.currentTimeMillis();
+        List<String> classFiles = new ArrayList<>();
+        List<String> subDirs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                boolean isClassFile = name.endsWith(".class") && !name.contains("$");
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isDirectory()) {
+                    subDirs.add(name);
+                } else if (isClassFile && !Files.isHidden(path)) {
+                    classFiles.add(name);
+                }
+            }
+        }
+        Collections.sort(classFiles);
+        Collections.sort(subDirs);
+        return new DirEntry(lastModified, listedAt, classFiles, subDirs);
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    synchronized void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(classesDir.getPath())) {
+                return;
+            }
+            Map<String, DirEntry> dirs = new HashMap<>();
+            for (int n = in.readInt(); n > 0; --n) {
+                String dirPath = in.readUTF();
+                long lastModified = in.readLong();
+                long listedAt = in.readLong();
+                List<String> classFiles = new ArrayList<>();
+                for (int m = in.readInt(); m > 0; --m) {
+                    classFiles.add(in.readUTF());
+                }
+                List<String> subDirs = new ArrayList<>();
+                for (int m = in.readInt(); m > 0; --m) {
+                    subDirs.add(in.readUTF());
+                }
+                dirs.put(dirPath, new DirEntry(lastModified, listedAt, classFiles, subDirs));
+            }
+            this.dirs.putAll(dirs);
+        } catch (IOException ignored) {
+            // Corrupt index file, will be replaced ...
+        }
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    synchronized void save() {
+        File dir = indexFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        // Only save the entries of directories, which are still reachable ...
+        Map<String, DirEntry> reachableDirs = new LinkedHashMap<>();
+        collectReachableDirs("", reachableDirs);
+        Path tempFile = null;
+        try {
+            // Note: Each JVM writes into a temp file of its own, which is renamed afterwards ...
+            tempFile = Files.createTempFile(dir.toPath(), indexFile.getName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(classesDir.getPath());
+                out.writeInt(reachableDirs.size());
+                for (Map.Entry<String, DirEntry> mapEntry : reachableDirs.entrySet()) {
+                    DirEntry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.lastModified);
+                    out.writeLong(entry.listedAt);
+                    out.writeInt(entry.classFiles.size());
+                    for (String classFile : entry.classFiles) {
+                        out.writeUTF(classFile);
+                    }
+                    out.writeInt(entry.subDirs.size());
+                    for (String subDir : entry.subDirs) {
+                        out.writeUTF(subDir);
+                    }
+                }
+            }
+            try {
+                Files.move(tempFile, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ignored) {
+            // The index is an optimization only, a failure to save it must not fail the test run
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    private void collectReachableDirs(String dirPath, Map<String, DirEntry> result) {
+        DirEntry entry = dirs.get(dirPath);
+        if (entry != null) {
+            result.put(dirPath, entry);
+            String prefix = (dirPath.isEmpty() ? "" : dirPath + "/");
+            for (String subDir : entry.subDirs) {
+                collectReachableDirs(prefix + subDir, result);
+            }
+        }
+    }
+}
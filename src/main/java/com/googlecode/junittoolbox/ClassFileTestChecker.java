@@ -0,0 +1,351 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.util.JUnit4TestChecker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Decides if a class is a test class by reading its class file (and the class files
+ * of its super classes and interfaces) instead of loading it, so that the static
+ * initializers of classes, which are no test classes, are never executed and
+ * no Metaspace is wasted for them. Uses the same criteria as {@link JUnit4TestChecker}:
+ * A test class must not be abstract and must either be annotated with <code>&#64;RunWith</code>
+ * (directly or inherited), or have a method annotated with <code>&#64;Test</code> (declared in the
+ * class or in one of its super classes), or implement <code>junit.framework.Test</code>.
+ * If that can not be decided without loading the class (e.g. because it has a
+ * <code>suite()</code> method or a class file can not be read),
+ * {@link Result#UNKNOWN} is returned.
+ */
+class ClassFileTestChecker {
+
+    enum Result { TEST, NO_TEST, UNKNOWN }
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    /** The descriptors of all runner classes, which have a child for each method annotated with <code>&#64;Test</code> */
+    private static final Set<String> RUNNERS_WITH_TEST_METHOD_CHILDREN = new HashSet<>(Arrays.asList(
+        "Lorg/junit/runners/JUnit4;",
+        "Lorg/junit/runners/BlockJUnit4ClassRunner;",
+        "Lcom/googlecode/junittoolbox/ParallelRunner;"
+    ));
+
+    /**
+     * The information about a class file needed to decide, if it is a test class.
+     */
+    static class ClassFileInfo {
+        int accessFlags;
+        String superName;
+        String[] interfaces;
+        boolean hasRunWithAnnotation;
+        /** The descriptor of the runner class specified with <code>&#64;RunWith</code> or <code>null</code> */
+        String runWith;
+        /** The descriptors of the categories specified with <code>&#64;Category</code> or <code>null</code> */
+        List<String> categories;
+        boolean hasTestMethod;
+        /** The descriptors of the categories of all methods annotated with <code>&#64;Test</code> or <code>&#64;Category</code> */
+        List<List<String>> methodCategories = new ArrayList<>();
+        boolean hasSuiteMethod;
+
+        /**
+         * Internal method, package private for testing.
+         */
+        static ClassFileInfo read(InputStream inputStream) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            in.readUnsignedShort(); // minor_version
+            in.readUnsignedShort(); // major_version
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantPoolCount];
+            int[] classNameIndex = new int[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; ++i) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7: // Class
+                        classNameIndex[i] = in.readUnsignedShort();
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.skipBytes(2);
+                        break;
+                    case 15: // MethodHandle
+                        in.skipBytes(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        in.skipBytes(4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        in.skipBytes(8);
+                        ++i;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            ClassFileInfo info = new ClassFileInfo();
+            info.accessFlags = in.readUnsignedShort();
+            in.readUnsignedShort(); // this_class
+            int superClass = in.readUnsignedShort();
+            info.superName = (superClass == 0 ? null : utf8[classNameIndex[superClass]]);
+            info.interfaces = new String[in.readUnsignedShort()];
+            for (int i = 0; i < info.interfaces.length; ++i) {
+                info.interfaces[i] = utf8[classNameIndex[in.readUnsignedShort()]];
+            }
+            for (int n = in.readUnsignedShort(); n > 0; --n) { // fields
+                in.skipBytes(6);
+                skipAttributes(in);
+            }
+            for (int n = in.readUnsignedShort(); n > 0; --n) { // methods
+                int accessFlags = in.readUnsignedShort();
+                String name = utf8[in.readUnsignedShort()];
+                String descriptor = utf8[in.readUnsignedShort()];
+                if ((accessFlags & (ACC_PUBLIC | ACC_STATIC)) == (ACC_PUBLIC | ACC_STATIC) && "suite".equals(name) && descriptor.startsWith("()L")) {
+                    info.hasSuiteMethod = true;
+                }
+                for (int m = in.readUnsignedShort(); m > 0; --m) {
+                    String attributeName = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+                        Map<String, List<String>> annotations = readAnnotations(in, utf8);
+                        boolean isTestMethod = annotations.containsKey("Lorg/junit/Test;");
+                        List<String> categories = annotations.get("Lorg/junit/experimental/categories/Category;");
+                        info.hasTestMethod |= isTestMethod;
+                        if (isTestMethod || categories != null) {
+                            info.methodCategories.add(categories == null ? Collections.emptyList() : categories);
+                        }
+                    } else {
+                        in.skipBytes(length);
+                    }
+                }
+            }
+            for (int n = in.readUnsignedShort(); n > 0; --n) { // class attributes
+                String attributeName = utf8[in.readUnsignedShort()];
+                int length = in.readInt();
+                if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+                    Map<String, List<String>> annotations = readAnnotations(in, utf8);
+                    List<String> runWith = annotations.get("Lorg/junit/runner/RunWith;");
+                    if (runWith != null) {
+                        info.hasRunWithAnnotation = true;
+                        info.runWith = (runWith.size() == 1 ? runWith.get(0) : null);
+                    }
+                    info.categories = annotations.get("Lorg/junit/experimental/categories/Category;");
+                } else {
+                    in.skipBytes(length);
+                }
+            }
+            return info;
+        }
+
+        private static void skipAttributes(DataInputStream in) throws IOException {
+            for (int n = in.readUnsignedShort(); n > 0; --n) {
+                in.skipBytes(2);
+                in.skipBytes(in.readInt());
+            }
+        }
+
+        /**
+         * Reads the annotations of a <code>RuntimeVisibleAnnotations</code> attribute,
+         * returns a map from the descriptor of each annotation type to the
+         * descriptors of the classes specified as its <code>value</code>.
+         */
+        private static Map<String, List<String>> readAnnotations(DataInputStream in, String[] utf8) throws IOException {
+            Map<String, List<String>> result = new HashMap<>();
+            for (int n = in.readUnsignedShort(); n > 0; --n) {
+                String type = utf8[in.readUnsignedShort()];
+                List<String> classValues = new ArrayList<>();
+                for (int m = in.readUnsignedShort(); m > 0; --m) {
+                    String elementName = utf8[in.readUnsignedShort()];
+                    readElementValue(in, utf8, "value".equals(elementName) ? classValues : null);
+                }
+                result.put(type, classValues);
+            }
+            return result;
+        }
+
+        private static void readElementValue(DataInputStream in, String[] utf8, @Nullable List<String> classValues) throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 'c':
+                    String descriptor = utf8[in.readUnsignedShort()];
+                    if (classValues != null) {
+                        classValues.add(descriptor);
+                    }
+                    break;
+                case 'e':
+                    in.skipBytes(4);
+                    break;
+                case '@':
+                    in.skipBytes(2);
+                    for (int n = in.readUnsignedShort(); n > 0; --n) {
+                        in.skipBytes(2);
+                        readElementValue(in, utf8, null);
+                    }
+                    break;
+                case '[':
+                    for (int n = in.readUnsignedShort(); n > 0; --n) {
+                        readElementValue(in, utf8, classValues);
+                    }
+                    break;
+                default:
+                    in.skipBytes(2);
+            }
+        }
+    }
+
+    private final ClassLoader classLoader;
+    /** Maps internal class names to the read class file info, <code>null</code> values for unreadable class files. */
+    private final Map<String, ClassFileInfo> classFileInfos = new HashMap<>();
+
+    ClassFileTestChecker(@Nonnull ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Checks if the class with the given name is a test class without loading it.
+     */
+    Result check(@Nonnull String className) {
+        ClassFileInfo info = getClassFileInfo(className.replace('.', '/'));
+        if (info == null) {
+            return Result.UNKNOWN;
+        }
+        if ((info.accessFlags & (ACC_ABSTRACT | ACC_INTERFACE)) != 0) {
+            return Result.NO_TEST;
+        }
+        boolean hasSuiteMethod = false;
+        while (true) {
+            if (info.hasRunWithAnnotation || info.hasTestMethod) {
+                return Result.TEST;
+            }
+            Result result = checkInterfaces(info.interfaces);
+            if (result != Result.NO_TEST) {
+                return result;
+            }
+            hasSuiteMethod |= info.hasSuiteMethod;
+            if (info.superName == null || isJdkClass(info.superName)) {
+                break;
+            }
+            info = getClassFileInfo(info.superName);
+            if (info == null) {
+                return Result.UNKNOWN;
+            }
+        }
+        // Whether a suite() method returns a junit.framework.Test can not be decided easily ...
+        return (hasSuiteMethod ? Result.UNKNOWN : Result.NO_TEST);
+    }
+
+    /**
+     * Returns the names of the categories of each possible child of the runner for the given
+     * test class (i.e. the categories of the class itself and the categories of the class
+     * combined with the categories of each test method), or <code>null</code> if they can not
+     * be determined from the class files, because the class is not run by the default runner
+     * (or {@link ParallelRunner}) or because a class file of its super classes can not be read.
+     */
+    @Nullable
+    List<List<String>> getCategoryCombinations(@Nonnull String className) {
+        ClassFileInfo info = getClassFileInfo(className.replace('.', '/'));
+        List<ClassFileInfo> hierarchy = new ArrayList<>();
+        while (info != null) {
+            if (info.hasRunWithAnnotation && !RUNNERS_WITH_TEST_METHOD_CHILDREN.contains(info.runWith)) {
+                return null;
+            }
+            hierarchy.add(info);
+            if (info.superName == null || isJdkClass(info.superName)) {
+                break;
+            }
+            info = getClassFileInfo(info.superName);
+        }
+        if (info == null || hierarchy.stream().noneMatch(i -> i.hasTestMethod)) {
+            return null;
+        }
+        // Note: @Category is @Inherited, therefore the annotation of the nearest class counts ...
+        List<String> classCategories = Collections.emptyList();
+        for (ClassFileInfo i : hierarchy) {
+            if (i.categories != null) {
+                classCategories = toClassNames(i.categories);
+                break;
+            }
+        }
+        List<List<String>> result = new ArrayList<>();
+        result.add(classCategories);
+        for (ClassFileInfo i : hierarchy) {
+            for (List<String> methodCategories : i.methodCategories) {
+                List<String> categories = new ArrayList<>(toClassNames(methodCategories));
+                categories.addAll(classCategories);
+                result.add(categories);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> toClassNames(List<String> descriptors) {
+        List<String> classNames = new ArrayList<>();
+        for (String descriptor : descriptors) {
+            classNames.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+        }
+        return classNames;
+    }
+
+    /**
+     * Returns {@link Result#TEST} if one of the given interfaces is or extends <code>junit.framework.Test</code>.
+     */
+    private Result checkInterfaces(String[] interfaces) {
+        for (String name : interfaces) {
+            if ("junit/framework/Test".equals(name)) {
+                return Result.TEST;
+            }
+            if (isJdkClass(name)) {
+                continue;
+            }
+            ClassFileInfo info = getClassFileInfo(name);
+            Result result = (info == null ? Result.UNKNOWN : checkInterfaces(info.interfaces));
+            if (result != Result.NO_TEST) {
+                return result;
+            }
+        }
+        return Result.NO_TEST;
+    }
+
+    private static boolean isJdkClass(String internalName) {
+        return internalName.startsWith("java/");
+    }
+
+    @Nullable
+    private ClassFileInfo getClassFileInfo(String internalName) {
+        if (classFileInfos.containsKey(internalName)) {
+            return classFileInfos.get(internalName);
+        }
+        ClassFileInfo info = null;
+        try (InputStream in = classLoader.getResourceAsStream(internalName + ".class")) {
+            if (in != null) {
+                info = ClassFileInfo.read(in);
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // The class will be loaded to decide if it is a test class ...
+        }
+        classFileInfos.put(internalName, info);
+        return info;
+    }
+}
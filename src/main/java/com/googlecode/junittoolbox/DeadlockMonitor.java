@@ -0,0 +1,279 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.util.MultiException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Detects deadlocks of the worker threads of a {@link MultithreadingTester}.
+ * Unlike <code>ThreadMXBean.findDeadlockedThreads()</code>, which inspects all threads
+ * of the JVM, only the registered threads are inspected: Their {@link Thread#getState state}
+ * is checked first (which is cheap), only if a thread is blocked (or waiting),
+ * the owners of the locks it is waiting for are followed, until a thread is found,
+ * which is not blocked (no deadlock), or until a thread is found a second time (deadlock).
+ * The registered threads are checked after {@value #MIN_CHECK_INTERVAL_MILLIS} ms,
+ * the interval between two checks is doubled after each check up to {@value #MAX_CHECK_INTERVAL_MILLIS} ms,
+ * so that short runs are checked often and long runs are checked rarely.
+ * Optionally, a <code>DeadlockMonitor</code> also detects stalls (e.g. livelocks or lost
+ * wake-ups), i.e. if the registered threads did not make any progress for a given time.
+ * A <code>DeadlockMonitor</code> can monitor several sets of threads,
+ * see {@link #shared()}.
+ */
+class DeadlockMonitor implements Runnable {
+
+    static final long MIN_CHECK_INTERVAL_MILLIS = 10;
+    static final long MAX_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static DeadlockMonitor sharedInstance;
+
+    /**
+     * Returns a <code>DeadlockMonitor</code> shared by all {@link MultithreadingTester}s,
+     * which reuse threads, it is executed by a daemon thread.
+     */
+    static synchronized DeadlockMonitor shared() {
+        if (sharedInstance == null) {
+            sharedInstance = new DeadlockMonitor();
+            Thread thread = new Thread(sharedInstance, "MultithreadingTester-monitor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * A set of threads monitored by a <code>DeadlockMonitor</code>.
+     */
+    static class Registration {
+        private final Supplier<Collection<Thread>> _threads;
+        private final LongSupplier _progress;
+        private final long _stallTimeoutMillis;
+        private final MultiException _me;
+        private final Set<Long> _idsOfDeadlockedThreads = new CopyOnWriteArraySet<>();
+        private volatile boolean _done;
+        private long _checkIntervalMillis = MIN_CHECK_INTERVAL_MILLIS;
+        private long _nextCheckNanos;
+        private long _lastProgress;
+        private long _lastProgressNanos;
+
+        private Registration(Supplier<Collection<Thread>> threads, @Nullable LongSupplier progress, long stallTimeoutMillis, MultiException me) {
+            _threads = threads;
+            _progress = progress;
+            _stallTimeoutMillis = stallTimeoutMillis;
+            _me = me;
+            long now = System.nanoTime();
+            _nextCheckNanos = now + TimeUnit.MILLISECONDS.toNanos(_checkIntervalMillis);
+            _lastProgressNanos = now;
+        }
+
+        /**
+         * Returns <code>true</code> if the monitoring has stopped,
+         * because a deadlock (or a stall) has been detected (or an unexpected error occurred).
+         */
+        boolean isDone() {
+            return _done;
+        }
+
+        Set<Long> getIdsOfDeadlockedThreads() {
+            return _idsOfDeadlockedThreads;
+        }
+    }
+
+    private final ThreadMXBean _threadMXBean = ManagementFactory.getThreadMXBean();
+    private final List<Registration> _registrations = new ArrayList<>();
+
+    /**
+     * Starts monitoring the threads returned by the given <code>Supplier</code>
+     * (which is called before each check), if a deadlock is detected, a
+     * <code>RuntimeException</code> describing it is added to the given <code>MultiException</code>.
+     */
+    Registration register(@Nonnull Supplier<Collection<Thread>> threads, @Nonnull MultiException me) {
+        return register(threads, null, 0, me);
+    }
+
+    /**
+     * Like {@link #register(Supplier, MultiException)}, but additionally adds a
+     * <code>RuntimeException</code> with stack dumps of the monitored threads to the
+     * given <code>MultiException</code>, if the value returned by the given <code>progress</code>
+     * supplier did not change for the given time.
+     */
+    synchronized Registration register(@Nonnull Supplier<Collection<Thread>> threads, @Nullable LongSupplier progress, long stallTimeoutMillis, @Nonnull MultiException me) {
+        Registration registration = new Registration(threads, progress, stallTimeoutMillis, me);
+        _registrations.add(registration);
+        notifyAll();
+        return registration;
+    }
+
+    synchronized void unregister(@Nonnull Registration registration) {
+        _registrations.remove(registration);
+    }
+
+    /**
+     * Checks the registered threads until the current thread is interrupted.
+     */
+    @Override
+    public void run() {
+        try {
+            List<Registration> dueRegistrations = new ArrayList<>();
+            for (;;) {
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    long waitNanos = Long.MAX_VALUE;
+                    for (Registration registration : _registrations) {
+                        long remainingNanos = registration._nextCheckNanos - now;
+                        if (remainingNanos <= 0) {
+                            dueRegistrations.add(registration);
+                        } else {
+                            waitNanos = Math.min(waitNanos, remainingNanos);
+                        }
+                    }
+                    if (dueRegistrations.isEmpty()) {
+                        if (waitNanos == Long.MAX_VALUE) {
+                            wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                        }
+                        continue;
+                    }
+                }
+                for (Registration registration : dueRegistrations) {
+                    check(registration);
+                }
+                dueRegistrations.clear();
+                if (Thread.interrupted()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException expected) {
+        }
+    }
+
+    private void check(Registration registration) {
+        try {
+            Collection<Thread> threads = registration._threads.get();
+            String report = findDeadlock(threads, registration._idsOfDeadlockedThreads);
+            if (report == null && registration._progress != null) {
+                report = findStall(registration, threads);
+            }
+            if (report != null) {
+                registration._me.add(new RuntimeException(report));
+                registration._done = true;
+            }
+        } catch (Throwable unexpected) {
+            registration._me.add(unexpected);
+            registration._done = true;
+        }
+        synchronized (this) {
+            if (registration._done) {
+                _registrations.remove(registration);
+            } else {
+                long maxCheckIntervalMillis = MAX_CHECK_INTERVAL_MILLIS;
+                if (registration._progress != null) {
+                    // Make sure, that a stall is detected soon after the stall timeout ...
+                    maxCheckIntervalMillis = Math.max(MIN_CHECK_INTERVAL_MILLIS, Math.min(maxCheckIntervalMillis, registration._stallTimeoutMillis / 4));
+                }
+                registration._checkIntervalMillis = Math.min(2 * registration._checkIntervalMillis, maxCheckIntervalMillis);
+                registration._nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(registration._checkIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Returns a description of the deadlock involving at least one of the given threads
+     * (and adds the ids of all deadlocked threads to the given set), or <code>null</code>
+     * if none of the given threads is deadlocked.
+     */
+    @Nullable
+    String findDeadlock(@Nonnull Collection<Thread> threads, @Nonnull Set<Long> idsOfDeadlockedThreads) {
+        for (Thread thread : threads) {
+            Thread.State state = thread.getState();
+            if (state != Thread.State.BLOCKED && state != Thread.State.WAITING) {
+                continue;
+            }
+            // Follow the lock owners, until a thread is not blocked or a cycle is found ...
+            List<Long> chain = new ArrayList<>();
+            long threadId = thread.getId();
+            while (threadId != -1 && !chain.contains(threadId)) {
+                chain.add(threadId);
+                ThreadInfo threadInfo = _threadMXBean.getThreadInfo(threadId);
+                threadId = (threadInfo == null ? -1 : threadInfo.getLockOwnerId());
+            }
+            if (threadId != -1) {
+                List<Long> cycle = chain.subList(chain.indexOf(threadId), chain.size());
+                // The thread infos above were taken one by one, so check
+                // with a consistent snapshot, that the cycle really exists ...
+                long[] ids = new long[cycle.size()];
+                for (int i = 0; i < ids.length; ++i) {
+                    ids[i] = cycle.get(i);
+                }
+                ThreadInfo[] threadInfos = _threadMXBean.getThreadInfo(ids, true, true);
+                if (isCycle(threadInfos)) {
+                    idsOfDeadlockedThreads.addAll(chain);
+                    return describeDeadlock(threadInfos);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String findStall(Registration registration, Collection<Thread> threads) {
+        long now = System.nanoTime();
+        long progress = registration._progress.getAsLong();
+        if (progress != registration._lastProgress) {
+            registration._lastProgress = progress;
+            registration._lastProgressNanos = now;
+            return null;
+        }
+        if (threads.isEmpty() || now - registration._lastProgressNanos < TimeUnit.MILLISECONDS.toNanos(registration._stallTimeoutMillis)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Detected stall: None of ").append(threads.size()).append(threads.size() == 1 ? " thread" : " threads");
+        sb.append(" completed a round within ").append(registration._stallTimeoutMillis).append(" ms:");
+        for (Thread thread : threads) {
+            // Note: Thread.getStackTrace() is used instead of ThreadMXBean.getThreadInfo(),
+            // because the latter does not support virtual threads ...
+            sb.append("\n\n\"").append(thread.getName()).append("\" ").append(thread.getState());
+            for (StackTraceElement element : thread.getStackTrace()) {
+                sb.append("\n\tat ").append(element);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isCycle(ThreadInfo[] threadInfos) {
+        for (int i = 0; i < threadInfos.length; ++i) {
+            ThreadInfo threadInfo = threadInfos[i];
+            ThreadInfo next = threadInfos[(i + 1) % threadInfos.length];
+            if (threadInfo == null || next == null || threadInfo.getLockOwnerId() != next.getThreadId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describeDeadlock(ThreadInfo[] threadInfos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Detected ").append(threadInfos.length).append(" deadlocked threads:\n");
+        sb.append("Lock owner chain: ");
+        for (ThreadInfo threadInfo : threadInfos) {
+            sb.append('"').append(threadInfo.getThreadName()).append("\" waits for ");
+            sb.append(threadInfo.getLockName()).append(" owned by ");
+        }
+        sb.append('"').append(threadInfos[0].getThreadName()).append('"');
+        for (ThreadInfo threadInfo : threadInfos) {
+            sb.append('\n').append(threadInfo);
+        }
+        return sb.toString();
+    }
+}
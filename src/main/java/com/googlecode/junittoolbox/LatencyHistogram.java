@@ -0,0 +1,133 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A histogram of latencies (in nanoseconds) with logarithmic buckets, each of
+ * which is divided into {@value #SUB_BUCKET_COUNT} linear sub buckets (like an
+ * <a href="http://hdrhistogram.org/">HdrHistogram</a>), so that recorded values
+ * are kept with a relative precision of better than 1%. Recording a value
+ * is cheap (no synchronization), therefore each thread should record into its
+ * own histogram -- histograms can be {@link #add added} afterwards.
+ * The sub buckets of a logarithmic bucket are allocated, when the first value
+ * is recorded into it (1 KB each), so a histogram of latencies, which vary
+ * by less than factor 8, only needs a few KB.
+ * Values greater than about 18 minutes are recorded as 18 minutes.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private static final int BUCKET_COUNT = MAX_VALUE_BITS - SUB_BUCKET_BITS + 1;
+
+    // The counts of the sub buckets, allocated lazily for each bucket ...
+    private final long[][] _counts = new long[BUCKET_COUNT][];
+    private long _totalCount;
+    private long _max;
+
+    void recordValue(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        int index = indexOf(value);
+        ++getSubBucketCounts(index / SUB_BUCKET_COUNT)[index % SUB_BUCKET_COUNT];
+        ++_totalCount;
+        if (value > _max) {
+            _max = value;
+        }
+    }
+
+    void add(@Nonnull LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+            long[] otherCounts = other._counts[bucket];
+            if (otherCounts != null) {
+                long[] counts = getSubBucketCounts(bucket);
+                for (int i = 0; i < SUB_BUCKET_COUNT; ++i) {
+                    counts[i] += otherCounts[i];
+                }
+            }
+        }
+        _totalCount += other._totalCount;
+        _max = Math.max(_max, other._max);
+    }
+
+    long getTotalCount() {
+        return _totalCount;
+    }
+
+    long getMax() {
+        return _max;
+    }
+
+    /**
+     * Returns the highest value (in nanoseconds) which is equivalent to the value
+     * at the given percentile (e.g. <code>99.0</code>), or <code>0</code> if
+     * no value has been recorded.
+     */
+    long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile + " -- must be between 0 and 100");
+        }
+        if (_totalCount == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * _totalCount));
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+            long[] counts = _counts[bucket];
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < SUB_BUCKET_COUNT; ++i) {
+                count += counts[i];
+                if (count >= countAtPercentile) {
+                    return Math.min(highestEquivalentValue(bucket * SUB_BUCKET_COUNT + i), _max);
+                }
+            }
+        }
+        return _max;
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    int getNumAllocatedBuckets() {
+        int n = 0;
+        for (long[] counts : _counts) {
+            if (counts != null) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    private long[] getSubBucketCounts(int bucket) {
+        long[] counts = _counts[bucket];
+        if (counts == null) {
+            counts = _counts[bucket] = new long[SUB_BUCKET_COUNT];
+        }
+        return counts;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int bucket = highestBit - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return bucket * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        int bucket = index / SUB_BUCKET_COUNT;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        int shift = bucket - 1;
+        long lowestValue = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper class for blocking calls in tests executed by {@link ParallelRunner},
+ * {@link ParallelSuite}, or {@link ParallelParameterized}. A worker thread of
+ * a fork join pool, which is blocked (e.g. by <code>Thread.sleep</code>, or while
+ * waiting for I/O), does not execute any other test. If the blocking call is wrapped
+ * with this class, the fork join pool is able to start another worker thread
+ * meanwhile, so that the number of running tests stays near the configured
+ * number of threads. Example:<pre>
+ *     &#64;Test
+ *     public void test_download() throws Exception {
+ *         byte[] data = ManagedBlocking.{@link #call call}(() -&gt; IOUtils.toByteArray(url));
+ *         ...
+ *     }
+ * </pre>
+ * To prevent an unlimited number of threads, a fork join pool of the JUnit Toolbox never
+ * starts more additional worker threads than its number of threads (i.e. there will be
+ * at most twice the number of threads specified by the system property
+ * <code>maxParallelTestThreads</code> or {@link ParallelismConfig#threads()}),
+ * if more worker threads are blocked, the blocking call is simply executed
+ * (without asking the pool to compensate for it).
+ * {@link PollingWait} uses this class, when it sleeps between two polls.
+ * If the current thread is not a worker thread of a fork join pool,
+ * the blocking call is simply executed.
+ *
+ * @since 2.6
+ */
+public final class ManagedBlocking {
+
+    private static class Blocker<T> implements ForkJoinPool.ManagedBlocker {
+        private final Callable<T> _blockingCall;
+        private boolean _done;
+        private T _result;
+        private Exception _exception;
+
+        Blocker(Callable<T> blockingCall) {
+            _blockingCall = blockingCall;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                _result = _blockingCall.call();
+            } catch (Exception e) {
+                _exception = e;
+            }
+            _done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return _done;
+        }
+    }
+
+    /**
+     * Executes the given blocking call and returns its result, if the current thread is a
+     * worker thread of a fork join pool, the pool may start another worker thread meanwhile.
+     */
+    public static <T> T call(@Nonnull Callable<T> blockingCall) throws Exception {
+        ForkJoinPool pool = ForkJoinTask.getPool();
+        if (pool == null) {
+            return blockingCall.call();
+        }
+        Blocker<T> blocker = new Blocker<>(blockingCall);
+        ParallelScheduler.TestForkJoinPool testForkJoinPool = (pool instanceof ParallelScheduler.TestForkJoinPool ? (ParallelScheduler.TestForkJoinPool) pool : null);
+        try {
+            // Note: If the pool can not start another worker thread, ForkJoinPool.managedBlock
+            // might retry to compensate until the blocker is releasable (e.g. on Java 8),
+            // therefore the blocking call is executed directly in this case ...
+            if (testForkJoinPool != null && testForkJoinPool.blockedWorkers.incrementAndGet() > testForkJoinPool.getParallelism()) {
+                blocker.block();
+            } else {
+                ForkJoinPool.managedBlock(blocker);
+            }
+        } finally {
+            if (testForkJoinPool != null) {
+                testForkJoinPool.blockedWorkers.decrementAndGet();
+            }
+        }
+        if (blocker._exception != null) {
+            throw blocker._exception;
+        }
+        return blocker._result;
+    }
+
+    /**
+     * Like {@link Thread#sleep}, but if the current thread is a worker thread
+     * of a fork join pool, the pool may start another worker thread meanwhile.
+     */
+    public static void sleep(long timeAmount, @Nonnull TimeUnit timeUnit) throws InterruptedException {
+        try {
+            call(() -> {
+                timeUnit.sleep(timeAmount);
+                return null;
+            });
+        } catch (InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // Can not happen, because TimeUnit.sleep throws no other checked exception ...
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ManagedBlocking() {}
+}
@@ -0,0 +1,112 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and the latencies of a {@link RunnableAssert} measured by
+ * {@link MultithreadingTester#runAndMeasure()}. The latencies are kept
+ * with a relative precision of better than 1%.
+ *
+ * @since 2.6
+ */
+public class Measurement {
+
+    private final String _name;
+    private final LatencyHistogram _histogram;
+    private final long _durationNanos;
+    private final double _targetOpsPerSecond;
+
+    Measurement(@Nonnull String name, @Nonnull LatencyHistogram histogram, long durationNanos, double targetOpsPerSecond) {
+        _name = name;
+        _histogram = histogram;
+        _durationNanos = durationNanos;
+        _targetOpsPerSecond = targetOpsPerSecond;
+    }
+
+    /**
+     * Returns the name of the measured {@link RunnableAssert}.
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Returns how often the {@link RunnableAssert} has been executed.
+     */
+    public long getCount() {
+        return _histogram.getTotalCount();
+    }
+
+    /**
+     * Returns the number of executions divided by the time between the start of
+     * the first execution and the end of the last execution (in seconds).
+     */
+    public double getOpsPerSecond() {
+        return _durationNanos <= 0 ? 0 : getCount() * 1e9 / _durationNanos;
+    }
+
+    /**
+     * Returns the number of executions per second, which should have been
+     * started according to {@link MultithreadingTester#targetRate}, or
+     * <code>0</code> if no target rate was specified.
+     */
+    public double getTargetOpsPerSecond() {
+        return _targetOpsPerSecond;
+    }
+
+    /**
+     * Returns by how much the achieved throughput fell short of the
+     * {@link #getTargetOpsPerSecond() target} (e.g. <code>0.25</code> if only
+     * 75% of the target were achieved), or <code>0</code> if the target has
+     * been achieved or no target rate was specified.
+     */
+    public double getShortfall() {
+        if (_targetOpsPerSecond <= 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - getOpsPerSecond() / _targetOpsPerSecond);
+    }
+
+    /**
+     * Returns the latency at the given percentile (e.g. <code>99.9</code>) in the given time unit.
+     */
+    public long getLatency(double percentile, @Nonnull TimeUnit timeUnit) {
+        return timeUnit.convert(_histogram.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the median latency in the given time unit.
+     */
+    public long getP50(@Nonnull TimeUnit timeUnit) {
+        return getLatency(50, timeUnit);
+    }
+
+    /**
+     * Returns the 99th percentile of the latencies in the given time unit.
+     */
+    public long getP99(@Nonnull TimeUnit timeUnit) {
+        return getLatency(99, timeUnit);
+    }
+
+    /**
+     * Returns the maximum latency in the given time unit.
+     */
+    public long getMax(@Nonnull TimeUnit timeUnit) {
+        return timeUnit.convert(_histogram.getMax(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        String s = String.format(Locale.ROOT, "%s: %d ops, %.1f ops/s, p50 = %.1f us, p99 = %.1f us, max = %.1f us",
+                                 _name, getCount(), getOpsPerSecond(),
+                                 _histogram.getValueAtPercentile(50) / 1000.0,
+                                 _histogram.getValueAtPercentile(99) / 1000.0,
+                                 _histogram.getMax() / 1000.0);
+        if (_targetOpsPerSecond > 0) {
+            s += String.format(Locale.ROOT, " (target: %.1f ops/s, shortfall: %.1f%%)", _targetOpsPerSecond, getShortfall() * 100);
+        }
+        return s;
+    }
+}
@@ -3,13 +3,17 @@ package com.googlecode.junittoolbox;
 import com.googlecode.junittoolbox.util.MultiException;
 
 import javax.annotation.Nonnull;
-import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadInfo;
-import java.lang.management.ThreadMXBean;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import static org.mockito.internal.util.Checks.checkItemsNotNull;
 import static org.mockito.internal.util.Checks.checkNotNull;
@@ -33,11 +37,38 @@ import static org.mockito.internal.util.Checks.checkNotNull;
  *                               .add(...)
  *                               .run();
  * </pre>
+ * Instead of a fixed number of rounds per thread, you can also specify
+ * a duration (see {@link #runFor}) or a total number of rounds of all threads
+ * (see {@link #numRoundsTotal}), so that a stress test takes about the same
+ * time, regardless of how fast the tested code is.
+ * Per default each thread executes its rounds as fast as possible, if you want to measure
+ * the latency of a component under a certain load, you can specify a target rate
+ * (see {@link #targetRate}).
+ * Per default new threads are started by each call of {@link #run run()},
+ * if you call it very often, you can let the <code>MultithreadingTester</code>
+ * reuse threads (see {@link #reuseThreads}). To test code with a high fan-out
+ * (e.g. with 10000 concurrent threads), you can use virtual threads (see {@link #useVirtualThreads}).
+ * Per default each thread stops at its first failure, if you want to know
+ * how often (and how differently) your code fails, use {@link #continueOnFailure}.
+ * Deadlocks of the worker threads are always detected, livelocks (or other stalls)
+ * only if you specify a {@link #stallTimeout}.
+ * Many race conditions only show up with particular thread schedules, to make
+ * them more likely, you can let the worker threads randomly vary their start and
+ * pause between rounds (see {@link #randomizeInterleavings}).
  */
 public class MultithreadingTester {
 
     private int numThreads = 100;
     private int roundsPerThreads = 1000;
+    private long durationNanos;
+    private long totalRounds;
+    private long targetRate;
+    private long stallTimeoutMillis;
+    private boolean randomizeInterleavings;
+    private Long interleavingSeed;
+    private boolean continueOnFailure;
+    private boolean reuseThreads;
+    private boolean useVirtualThreads;
     private final List<RunnableAssert> runnableAsserts = new ArrayList<>();
 
     /**
@@ -66,6 +97,161 @@ public class MultithreadingTester {
         return this;
     }
 
+    /**
+     * Lets all threads execute their {@link RunnableAssert}s again and again,
+     * until the given duration has passed (the round executed at that time is completed),
+     * returns <code>this</code> to allow method chaining.
+     * If specified, {@link #numRoundsPerThread} is ignored.
+     * Can be combined with {@link #numRoundsTotal}, in which case
+     * the threads stop as soon as one of both limits is reached.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester runFor(long timeAmount, @Nonnull TimeUnit timeUnit) {
+        if (timeAmount <= 0) {
+            throw new IllegalArgumentException("Invalid timeAmount: " + timeAmount + " -- must be greater than 0");
+        }
+        this.durationNanos = timeUnit.toNanos(timeAmount);
+        return this;
+    }
+
+    /**
+     * Lets all threads execute their {@link RunnableAssert}s again and again,
+     * until all threads together have executed the given number of rounds,
+     * returns <code>this</code> to allow method chaining.
+     * If specified, {@link #numRoundsPerThread} is ignored.
+     * Can be combined with {@link #runFor}, in which case
+     * the threads stop as soon as one of both limits is reached.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester numRoundsTotal(long totalRounds) {
+        if (totalRounds <= 0) {
+            throw new IllegalArgumentException("Invalid totalRounds parameter: " + totalRounds + " -- must be greater than 0");
+        }
+        this.totalRounds = totalRounds;
+        return this;
+    }
+
+    /**
+     * Lets all threads together start the given number of rounds per second
+     * (each thread starts its rounds at a fixed rate, the threads are
+     * staggered evenly), returns <code>this</code> to allow method chaining.
+     * If a thread falls behind its schedule (because a round took longer than
+     * planned), it starts its next rounds without waiting, until it has caught up.
+     * {@link #runAndMeasure()} measures the latency of each round from the time,
+     * at which the round should have been started (so that latencies are not
+     * hidden by a slow round, which delays the following ones), and reports the
+     * target rate as well as the achieved rate.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester targetRate(long roundsPerSecond) {
+        if (roundsPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid roundsPerSecond parameter: " + roundsPerSecond + " -- must be greater than 0");
+        }
+        this.targetRate = roundsPerSecond;
+        return this;
+    }
+
+    /**
+     * Lets {@link #run run()} fail, if none of the worker threads completes a
+     * round within the given time (e.g. because of a livelock or a lost wake-up),
+     * returns <code>this</code> to allow method chaining.
+     * The failure contains the stack traces of all worker threads, which are still running.
+     * Workers waiting for the scheduled start of their next round (see {@link #targetRate})
+     * are not considered stalled.
+     * Per default, stalls are not detected (only deadlocks).
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester stallTimeout(long timeAmount, @Nonnull TimeUnit timeUnit) {
+        if (timeAmount <= 0) {
+            throw new IllegalArgumentException("Invalid timeAmount: " + timeAmount + " -- must be greater than 0");
+        }
+        this.stallTimeoutMillis = timeUnit.toMillis(timeAmount);
+        return this;
+    }
+
+    /**
+     * Lets the worker threads randomly perturb their interleaving, so that
+     * race conditions are found with fewer rounds, returns <code>this</code>
+     * to allow method chaining: Some workers do not wait for the others before
+     * they start, the start of each worker is delayed by a random time (up to 1 ms),
+     * and before each round a worker randomly either continues immediately,
+     * yields, spins for a short time, or pauses for a few microseconds.
+     * Each call of {@link #run run()} uses a new random seed, if the run fails,
+     * the thrown {@link MultiException} contains the seed, so that you can reproduce
+     * the random decisions of the workers with {@link #randomizeInterleavings(long)}.
+     * Per default, the worker threads start together and execute their rounds without pauses.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester randomizeInterleavings() {
+        this.randomizeInterleavings = true;
+        this.interleavingSeed = null;
+        return this;
+    }
+
+    /**
+     * Like {@link #randomizeInterleavings()}, but uses the given seed for each
+     * call of {@link #run run()}, returns <code>this</code> to allow method chaining.
+     * Note: The thread scheduling of the operating system is not reproducible,
+     * only the random decisions of the worker threads are.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester randomizeInterleavings(long seed) {
+        this.randomizeInterleavings = true;
+        this.interleavingSeed = seed;
+        return this;
+    }
+
+    /**
+     * If set to <code>true</code>, each thread executes all of its rounds,
+     * even if its {@link RunnableAssert} fails, default is <code>false</code>,
+     * returns <code>this</code> to allow method chaining.
+     * All failures are collected in a {@link MultiException}, which counts the
+     * occurrences of failures with the same stack trace, so that its message
+     * shows how often each failure occurred.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester continueOnFailure(boolean continueOnFailure) {
+        this.continueOnFailure = continueOnFailure;
+        return this;
+    }
+
+    /**
+     * If set to <code>true</code>, the worker threads are taken from a thread pool
+     * shared by all <code>MultithreadingTester</code>s (and they are monitored
+     * for deadlocks by a thread shared by all <code>MultithreadingTester</code>s),
+     * instead of starting new threads for each call of {@link #run run()},
+     * default is <code>false</code>, returns <code>this</code> to allow method chaining.
+     * Threads of the shared thread pool are terminated, when they have not been used for a minute.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester reuseThreads(boolean reuseThreads) {
+        this.reuseThreads = reuseThreads;
+        return this;
+    }
+
+    /**
+     * If set to <code>true</code>, each worker executes its {@link RunnableAssert}
+     * in a new virtual thread (requires Java 21 or later, on older JVMs
+     * platform threads are used), default is <code>false</code>,
+     * returns <code>this</code> to allow method chaining.
+     * Virtual threads are cheap, so you can use e.g. {@link #numThreads numThreads(10000)}.
+     * Note: Deadlocks of virtual threads are not detected.
+     *
+     * @since 2.6
+     */
+    public MultithreadingTester useVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+        return this;
+    }
+
     /**
      * Adds the given {@link RunnableAssert}s to this <code>MultithreadingTester</code>,
      * returns <code>this</code> to allow method chaining.
@@ -139,9 +325,130 @@ public class MultithreadingTester {
         }
     }
 
-    private Thread monitorThread;
-    private Thread[] workerThreads;
-    private final Set<Long> idsOfDeadlockedThreads = new CopyOnWriteArraySet<>();
+    /**
+     * The thread pool used, if {@link #reuseThreads} is specified -- it must
+     * not limit the number of threads, because all workers must run concurrently.
+     */
+    private static class SharedThreadPool {
+        static final ExecutorService INSTANCE;
+        static {
+            AtomicInteger threadCount = new AtomicInteger();
+            INSTANCE = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "MultithreadingTester-pool-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Calls <code>Thread.onSpinWait()</code> if the JVM supports it (Java 9 or later).
+     */
+    private static class SpinWait {
+        private static final MethodHandle ON_SPIN_WAIT;
+        static {
+            MethodHandle onSpinWait;
+            try {
+                // Thread.onSpinWait() -- looked up via reflection to stay compatible with Java 8 ...
+                onSpinWait = MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+            } catch (Exception ignored) {
+                onSpinWait = null;
+            }
+            ON_SPIN_WAIT = onSpinWait;
+        }
+
+        static void onSpinWait() {
+            if (ON_SPIN_WAIT != null) {
+                try {
+                    ON_SPIN_WAIT.invokeExact();
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+    }
+
+    private static class VirtualThreads {
+        static final ThreadFactory FACTORY = VirtualThreadExecutor.createVirtualThreadFactory("MultithreadingTester-virtual-");
+    }
+
+    /**
+     * A task executed by a worker thread or the monitor thread, which can
+     * be interrupted while it is running -- even if it is executed by
+     * a thread of the {@link SharedThreadPool}.
+     */
+    private abstract static class Task implements Runnable {
+        final String name;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Thread thread;
+        private boolean done;
+
+        Task(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public final void run() {
+            Thread currentThread = Thread.currentThread();
+            synchronized (this) {
+                if (done) {
+                    // Got interrupted before the task was started ...
+                    finished.countDown();
+                    return;
+                }
+                thread = currentThread;
+            }
+            String oldName = currentThread.getName();
+            currentThread.setName(name);
+            try {
+                execute();
+            } finally {
+                currentThread.setName(oldName);
+                synchronized (this) {
+                    thread = null;
+                    done = true;
+                }
+                // Clear the interrupted flag, in case the thread is reused ...
+                Thread.interrupted();
+                finished.countDown();
+            }
+        }
+
+        abstract void execute();
+
+        synchronized void interrupt() {
+            if (thread != null) {
+                thread.interrupt();
+            } else {
+                done = true;
+            }
+        }
+
+        /**
+         * Returns the thread executing this task or <code>null</code>,
+         * if it has not been started yet or is already finished.
+         */
+        synchronized Thread getThread() {
+            return thread;
+        }
+
+        boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+
+        boolean awaitFinished(long millis) throws InterruptedException {
+            return finished.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Task monitor;
+    private DeadlockMonitor.Registration monitorRegistration;
+    private Worker[] workers;
+    // Note: The workers check these two fields in each round, therefore they are
+    // cheap to read: a volatile flag set when the deadline has been reached (instead
+    // of calling System.nanoTime() in each round) and a counter from which the workers
+    // claim batches of rounds (instead of decrementing it in each round) ...
+    private volatile boolean deadlineReached;
+    private AtomicLong remainingRounds;
 
     /**
      * Starts multiple threads, which execute the added {@link RunnableAssert}s
@@ -154,6 +461,32 @@ public class MultithreadingTester {
      * @see #numRoundsPerThread(int)
      */
     public void run() {
+        run(false);
+    }
+
+    /**
+     * Like {@link #run()}, but additionally measures the latency of each execution
+     * of each added {@link RunnableAssert} and returns the throughput and
+     * the latencies for each of them (in the order they were added).
+     * The latencies are recorded by each worker thread into a histogram of its own,
+     * so that the measurement does not introduce any additional contention.
+     * Such a histogram needs 1 KB for each power of two covered by the latencies
+     * of its thread (usually a few KB), keep this in mind when measuring with many
+     * thousand {@link #useVirtualThreads virtual threads}.
+     * Example:<pre>
+     *     List&lt;Measurement&gt; measurements = new MultithreadingTester().numThreads(8)
+     *                                                                 .add(() -&gt; cache.get(randomKey()))
+     *                                                                 .runAndMeasure();
+     *     System.out.println(measurements.get(0)); // prints ops/s, p50, p99, and max
+     * </pre>
+     *
+     * @since 2.6
+     */
+    public List<Measurement> runAndMeasure() {
+        return run(true);
+    }
+
+    private List<Measurement> run(boolean measure) {
         if (runnableAsserts.size() > numThreads) {
             throw new IllegalStateException("You added more RunnableAsserts (" + runnableAsserts.size() + ") than the number of threads (" + numThreads + ") configured for this MultithreadingTester");
         }
@@ -161,118 +494,377 @@ public class MultithreadingTester {
             throw new IllegalStateException("You must add at least 1 RunnableAssert before you can call run()");
         }
         MultiException me = new MultiException();
+        deadlineReached = false;
+        remainingRounds = (totalRounds > 0 ? new AtomicLong(totalRounds) : null);
+        workers = new Worker[numThreads];
+        long seed = 0;
+        SplittableRandom random = null;
+        if (randomizeInterleavings) {
+            seed = (interleavingSeed != null ? interleavingSeed : ThreadLocalRandom.current().nextLong());
+            random = new SplittableRandom(seed);
+        }
         startMonitorThread(me);
         try {
-            startWorkerThreads(me);
-            joinWorkerThreads();
+            startWorkerThreads(me, measure, random);
+            joinWorkerThreads(durationNanos > 0 ? System.nanoTime() + durationNanos : 0);
         } finally {
+            // Stop remaining workers, if joinWorkerThreads() returned early (because of a deadlock or a stall) ...
+            deadlineReached = true;
+            if (monitorRegistration.isDone()) {
+                for (Worker worker : workers) {
+                    if (worker != null) {
+                        worker.interrupt();
+                    }
+                }
+            }
             stopMonitorThread();
         }
+        if (random != null && !me.isEmpty()) {
+            // Note: The seed is added to the thrown failure (instead of printing it),
+            // so that it shows up in the test report of the failed test ...
+            me.add(new RuntimeException("MultithreadingTester failed with randomized interleavings -- use randomizeInterleavings(" + seed + "L) to reproduce the random decisions of the worker threads"));
+        }
         me.throwIfNotEmpty();
+        return measure ? collectMeasurements() : null;
     }
 
-    private void startMonitorThread(MultiException me) {
-        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
-        Set<Long> knownDeadlockedThreadIds = asSet(threadMXBean.findDeadlockedThreads());
-        monitorThread = new Thread("MultithreadingTester-monitor") {
-            @Override
-            public void run() {
-                try {
-                    while (!interrupted()) {
-                        long[] threadIds = threadMXBean.findDeadlockedThreads();
-                        if (threadIds != null) {
-                            Set<Long> temp = asSet(threadIds);
-                            temp.removeAll(knownDeadlockedThreadIds);
-                            if (!temp.isEmpty()) {
-                                idsOfDeadlockedThreads.addAll(temp);
-                                StringBuilder sb = new StringBuilder();
-                                sb.append("Detected ").append(threadIds.length).append(" deadlocked threads:");
-                                for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadIds, true, true)) {
-                                    sb.append('\n').append(threadInfo);
-                                }
-                                me.add(new RuntimeException(sb.toString()));
-                                return;
-                            }
+    private List<Measurement> collectMeasurements() {
+        List<Measurement> measurements = new ArrayList<>();
+        Set<RunnableAssert> measuredRunnableAsserts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RunnableAssert runnableAssert : runnableAsserts) {
+            if (measuredRunnableAsserts.add(runnableAssert)) {
+                LatencyHistogram histogram = new LatencyHistogram();
+                long startNanos = Long.MAX_VALUE;
+                long endNanos = Long.MIN_VALUE;
+                int numWorkers = 0;
+                for (Worker worker : workers) {
+                    if (worker.runnableAssert == runnableAssert) {
+                        ++numWorkers;
+                        if (worker.histogram.getTotalCount() > 0) {
+                            histogram.add(worker.histogram);
+                            startNanos = Math.min(startNanos, worker.firstStartNanos);
+                            endNanos = Math.max(endNanos, worker.lastEndNanos);
                         }
-                        Thread.sleep(1000);
                     }
-                } catch (InterruptedException expected) {
-                } catch (Throwable unexpected) {
-                    me.add(unexpected);
+                }
+                long durationNanos = histogram.getTotalCount() > 0 ? endNanos - startNanos : 0;
+                double targetOpsPerSecond = (double) targetRate * numWorkers / numThreads;
+                measurements.add(new Measurement(runnableAssert.toString(), histogram, durationNanos, targetOpsPerSecond));
+            }
+        }
+        return measurements;
+    }
+
+    private void start(Task task, boolean isMonitor) {
+        ThreadFactory virtualThreadFactory = (useVirtualThreads && !isMonitor ? VirtualThreads.FACTORY : null);
+        if (virtualThreadFactory != null) {
+            virtualThreadFactory.newThread(task).start();
+        } else if (reuseThreads) {
+            SharedThreadPool.INSTANCE.execute(task);
+        } else {
+            Thread thread = new Thread(task, task.name);
+            if (isMonitor) {
+                thread.setPriority(Thread.MAX_PRIORITY);
+            }
+            thread.start();
+        }
+    }
+
+    private void startMonitorThread(MultiException me) {
+        Supplier<Collection<Thread>> runningWorkerThreads = () -> {
+            List<Thread> threads = new ArrayList<>();
+            for (Worker worker : workers) {
+                // Note: worker is null, if it has not been created yet ...
+                Thread thread = (worker == null ? null : worker.getThread());
+                if (thread != null) {
+                    threads.add(thread);
                 }
             }
+            return threads;
         };
-        monitorThread.setPriority(Thread.MAX_PRIORITY);
-        monitorThread.start();
+        LongSupplier progress = null;
+        if (stallTimeoutMillis > 0) {
+            progress = () -> {
+                long sum = 0;
+                for (Worker worker : workers) {
+                    if (worker != null) {
+                        sum += worker.progress.get();
+                    }
+                }
+                return sum;
+            };
+        }
+        if (reuseThreads) {
+            monitor = null;
+            monitorRegistration = DeadlockMonitor.shared().register(runningWorkerThreads, progress, stallTimeoutMillis, me);
+        } else {
+            DeadlockMonitor deadlockMonitor = new DeadlockMonitor();
+            monitorRegistration = deadlockMonitor.register(runningWorkerThreads, progress, stallTimeoutMillis, me);
+            monitor = new Task("MultithreadingTester-monitor") {
+                @Override
+                void execute() {
+                    deadlockMonitor.run();
+                }
+            };
+            start(monitor, true);
+        }
     }
 
-    private void startWorkerThreads(MultiException me) {
-        workerThreads = new Thread[numThreads];
+    private void startWorkerThreads(MultiException me, boolean measure, @Nullable SplittableRandom random) {
         Iterator<RunnableAssert> i = runnableAsserts.iterator();
         CountDownLatch latch = new CountDownLatch(numThreads);
         for (int j = 0; j < numThreads; ++j) {
             if (!i.hasNext()) {
                 i = runnableAsserts.iterator();
             }
-            RunnableAssert runnableAssert = i.next();
-            Thread workerThread = new Thread("MultithreadingTester-worker-" + (j + 1)) {
-                @Override
-                public void run() {
-                    try {
-                        latch.countDown();
-                        latch.await();
-                        for (int i = 0; i < roundsPerThreads; ++i) {
-                            runnableAssert.run();
+            Worker worker = new Worker("MultithreadingTester-worker-" + (j + 1), i.next(), measure ? new LatencyHistogram() : null, latch, me);
+            if (targetRate > 0) {
+                worker.intervalNanos = 1e9 * numThreads / targetRate;
+                worker.offsetNanos = (long) (1e9 * j / targetRate);
+            }
+            if (random != null) {
+                // Split the random generator before the worker is started, so that
+                // each worker gets the same random sequence for the same seed ...
+                worker.random = random.split();
+            }
+            workers[j] = worker;
+            start(worker, false);
+        }
+    }
+
+    /**
+     * Executes a {@link RunnableAssert} for the configured number of rounds.
+     */
+    private class Worker extends Task {
+        private static final long MAX_PARK_NANOS = 10_000_000; // 10 ms
+
+        final RunnableAssert runnableAssert;
+        final LatencyHistogram histogram;
+        final CountDownLatch latch;
+        final MultiException me;
+        long firstStartNanos;
+        long lastEndNanos;
+        // Incremented after each round and while waiting for the scheduled start
+        // of a round (which is no stall), only written by the worker thread,
+        // read by the monitor thread to detect stalls ...
+        final AtomicLong progress = new AtomicLong();
+        // Only used if randomizeInterleavings() has been called ...
+        SplittableRandom random;
+        // Only used if a target rate is specified ...
+        double intervalNanos;
+        long offsetNanos;
+        private long scheduleStartNanos;
+        private long scheduledStartNanos;
+        private long roundNo;
+
+        Worker(String name, RunnableAssert runnableAssert, @Nullable LatencyHistogram histogram, CountDownLatch latch, MultiException me) {
+            super(name);
+            this.runnableAssert = runnableAssert;
+            this.histogram = histogram;
+            this.latch = latch;
+            this.me = me;
+        }
+
+        @Override
+        void execute() {
+            try {
+                latch.countDown();
+                if (random == null) {
+                    latch.await();
+                } else {
+                    randomizeStart();
+                }
+                scheduleStartNanos = System.nanoTime() + offsetNanos;
+                if (durationNanos > 0 || remainingRounds != null) {
+                    long claimedRounds = 0;
+                    while (!deadlineReached) {
+                        if (claimedRounds == 0) {
+                            if (remainingRounds == null) {
+                                claimedRounds = Long.MAX_VALUE;
+                            } else {
+                                claimedRounds = claimRounds();
+                                if (claimedRounds == 0) {
+                                    break;
+                                }
+                            }
                         }
-                    } catch (Throwable t) {
-                        me.add(t);
+                        --claimedRounds;
+                        runRound();
+                    }
+                } else {
+                    for (int i = 0; i < roundsPerThreads; ++i) {
+                        runRound();
                     }
                 }
-            };
-            workerThread.start();
-            workerThreads[j] = workerThread;
+            } catch (Throwable t) {
+                me.add(t);
+            }
+        }
+
+        private long claimRounds() {
+            // Claim up to 1/(10 * numThreads) of all rounds at once, so that
+            // the threads rarely contend on remainingRounds, but still
+            // finish at about the same time ...
+            long batchSize = Math.max(1, Math.min(1000, totalRounds / (10L * numThreads)));
+            long remaining = remainingRounds.getAndAdd(-batchSize);
+            return Math.max(0, Math.min(batchSize, remaining));
+        }
+
+        /**
+         * Lets about a quarter of the workers start without waiting for
+         * the other workers and delays the start by up to 1 ms.
+         */
+        private void randomizeStart() throws InterruptedException {
+            if (random.nextInt(4) != 0) {
+                latch.await();
+            }
+            LockSupport.parkNanos(random.nextLong(TimeUnit.MILLISECONDS.toNanos(1)));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        /**
+         * Randomly continues immediately (in half of the cases), yields,
+         * spins for a short time, or pauses for a few microseconds.
+         */
+        private void randomizeInterleaving() {
+            int r = random.nextInt(16);
+            if (r < 8) {
+                return;
+            }
+            if (r < 11) {
+                Thread.yield();
+            } else if (r < 15) {
+                for (int i = random.nextInt(1, 100); i > 0; --i) {
+                    SpinWait.onSpinWait();
+                }
+            } else {
+                LockSupport.parkNanos(random.nextLong(1000, 50000));
+            }
+        }
+
+        private void runRound() throws Exception {
+            if (random != null) {
+                randomizeInterleaving();
+            }
+            long startNanos;
+            if (intervalNanos > 0) {
+                if (!awaitScheduledStart()) {
+                    return;
+                }
+                startNanos = scheduledStartNanos;
+            } else {
+                startNanos = System.nanoTime();
+            }
+            if (histogram != null) {
+                runMeasuredRound(startNanos);
+            } else {
+                runUnmeasuredRound();
+            }
+            // Note: lazySet is cheaper than a volatile write, the monitor thread
+            // does not need to see the new value immediately ...
+            progress.lazySet(progress.get() + 1);
+        }
+
+        /**
+         * Waits until the scheduled start of the next round (unless this worker
+         * is behind its schedule) and stores it in {@link #scheduledStartNanos}.
+         * Returns <code>false</code>, if the deadline has been reached in the
+         * meantime, i.e. if the round must not be executed.
+         */
+        private boolean awaitScheduledStart() throws InterruptedException {
+            scheduledStartNanos = scheduleStartNanos + (long) (roundNo++ * intervalNanos);
+            long delayNanos;
+            while ((delayNanos = scheduledStartNanos - System.nanoTime()) > 0) {
+                // Park in short slices, so that the deadline is noticed soon ...
+                LockSupport.parkNanos(Math.min(delayNanos, MAX_PARK_NANOS));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (deadlineReached) {
+                    return false;
+                }
+                progress.lazySet(progress.get() + 1);
+            }
+            return true;
+        }
+
+        private void runMeasuredRound(long startNanos) throws Exception {
+            try {
+                runUnmeasuredRound();
+            } finally {
+                long endNanos = System.nanoTime();
+                if (histogram.getTotalCount() == 0) {
+                    firstStartNanos = startNanos;
+                }
+                histogram.recordValue(endNanos - startNanos);
+                lastEndNanos = endNanos;
+            }
+        }
+
+        private void runUnmeasuredRound() throws Exception {
+            if (continueOnFailure) {
+                try {
+                    runnableAssert.run();
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    me.add(t);
+                }
+            } else {
+                runnableAssert.run();
+            }
         }
     }
 
-    private void joinWorkerThreads() {
+    /**
+     * @param deadline the value of <code>System.nanoTime()</code> at which the
+     *                 workers should stop, <code>0</code> if there is no deadline
+     */
+    private void joinWorkerThreads(long deadline) {
         boolean foundAliveWorkerThread;
         do {
             foundAliveWorkerThread = false;
-            for (int i = 0; i < numThreads; ++i) {
+            for (Worker worker : workers) {
                 try {
-                    Thread workerThread = workerThreads[i];
-                    workerThread.join(100);
-                    if (workerThread.isAlive() && !idsOfDeadlockedThreads.contains(workerThread.getId())) {
-                        foundAliveWorkerThread = true;
+                    long joinMillis = 100;
+                    if (deadline != 0 && !deadlineReached) {
+                        long remainingNanos = deadline - System.nanoTime();
+                        if (remainingNanos <= 0) {
+                            deadlineReached = true;
+                        } else {
+                            joinMillis = Math.max(1, Math.min(joinMillis, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+                        }
+                    }
+                    if (!worker.awaitFinished(joinMillis)) {
+                        Thread workerThread = worker.getThread();
+                        if (workerThread == null || !monitorRegistration.getIdsOfDeadlockedThreads().contains(workerThread.getId())) {
+                            foundAliveWorkerThread = true;
+                        }
                     }
                 } catch (InterruptedException e) {
-                    for (int j = 0; j < numThreads; ++j) {
-                        workerThreads[j].interrupt();
+                    for (Worker w : workers) {
+                        w.interrupt();
                     }
                     Thread.currentThread().interrupt();
                     throw new RuntimeException("Got interrupted", e);
                 }
             }
-        } while (foundAliveWorkerThread && monitorThread.isAlive());
+        } while (foundAliveWorkerThread && !monitorRegistration.isDone());
     }
 
     private void stopMonitorThread() {
-        monitorThread.interrupt();
+        if (monitor == null) {
+            DeadlockMonitor.shared().unregister(monitorRegistration);
+            return;
+        }
+        monitor.interrupt();
         try {
-            monitorThread.join();
+            monitor.awaitFinished(Long.MAX_VALUE);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Got interrupted", e);
         }
     }
-
-    private Set<Long> asSet(long[] array) {
-        Set<Long> set = new HashSet<>();
-        if (array != null) {
-            for (long x : array) {
-                set.add(x);
-            }
-        }
-        return set;
-    }
 }
@@ -1,7 +1,11 @@
 package com.googlecode.junittoolbox;
 
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.Parameterized;
 
+import java.util.List;
+
 /**
  * An extension of the JUnit {@link Parameterized}
  * runner, which executes the tests for each parameter set
@@ -11,11 +15,26 @@ import org.junit.runners.Parameterized;
  * If this system property is not specified, the maximum
  * number of test threads will be the number of
  * {@link Runtime#availableProcessors() available processors}.
+ * <p>If you specify a file using the system property <code>testTimingHistoryFile</code>,
+ * the duration of each parameter set is recorded in this file (see {@link TimingHistory})
+ * and on subsequent runs the parameter sets with the longest duration are started first.
  */
 public class ParallelParameterized extends Parameterized {
 
     public ParallelParameterized(Class<?> klass) throws Throwable {
         super(klass);
-        setScheduler(new ParallelScheduler());
+        setScheduler(ParallelScheduler.forClass(klass));
+    }
+
+    @Override
+    protected List<Runner> getChildren() {
+        return ParallelScheduler.longestFirst(getName(), super.getChildren(), this::describeChild);
+    }
+
+    @Override
+    protected void runChild(Runner runner, RunNotifier notifier) {
+        long startTime = System.nanoTime();
+        super.runChild(runner, notifier);
+        ParallelScheduler.recordDuration(getName(), describeChild(runner), System.nanoTime() - startTime);
     }
 }
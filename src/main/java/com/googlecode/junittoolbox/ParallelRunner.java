@@ -3,6 +3,7 @@ package com.googlecode.junittoolbox;
 import static com.googlecode.junittoolbox.util.TigerThrower.sneakyThrow;
 
 import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.RecursiveAction;
@@ -12,6 +13,7 @@ import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
 import org.junit.experimental.theories.internal.Assignments;
 import org.junit.internal.AssumptionViolatedException;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
@@ -39,12 +41,27 @@ import org.junit.runners.model.TestClass;
  * If this system property is not specified, the maximum
  * number of test threads will be the number of
  * {@link Runtime#availableProcessors() available processors.}
+ * If you specify a file using the system property <code>testTimingHistoryFile</code>,
+ * the duration of each test method is recorded in this file (see {@link TimingHistory})
+ * and on subsequent runs the test methods with the longest duration are started first.
  */
 public class ParallelRunner extends Theories {
 
     public ParallelRunner(Class<?> klass) throws InitializationError {
         super(klass);
-        setScheduler(new ParallelScheduler());
+        setScheduler(ParallelScheduler.forClass(klass));
+    }
+
+    @Override
+    protected List<FrameworkMethod> getChildren() {
+        return ParallelScheduler.longestFirst(getName(), super.getChildren(), this::describeChild);
+    }
+
+    @Override
+    protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+        long startTime = System.nanoTime();
+        super.runChild(method, notifier);
+        ParallelScheduler.recordDuration(getName(), describeChild(method), System.nanoTime() - startTime);
     }
 
     @Override
@@ -77,7 +94,7 @@ public class ParallelRunner extends Theories {
                 Throwable failure = null;
                 while (failure == null && !_asyncRuns.isEmpty()) {
                     ForkJoinTask<?> task = _asyncRuns.removeFirst();
-                    try { task.join(); } catch (Throwable t) { failure = t; }
+                    try { ParallelScheduler.join(task); } catch (Throwable t) { failure = t; }
                 }
                 if (failure != null) {
                     // Cancel all remaining tasks ...
@@ -88,7 +105,7 @@ public class ParallelRunner extends Theories {
                     // ... and join them, to prevent interference with other tests ...
                     while (!_asyncRuns.isEmpty()) {
                         ForkJoinTask<?> task = _asyncRuns.removeFirst();
-                        try { task.join(); } catch (Throwable ignored) {}
+                        try { ParallelScheduler.join(task); } catch (Throwable ignored) {}
                     }
                     throw failure;
                 }
@@ -97,19 +114,22 @@ public class ParallelRunner extends Theories {
 
         @Override
         protected void runWithIncompleteAssignment(Assignments incomplete) throws Throwable {
+            WaitBudgetContext waitBudgetContext = WaitBudgetContext.current();
             for (PotentialAssignment source : incomplete.potentialsForNextUnassigned()) {
                 Assignments nextAssignment = incomplete.assignNext(source);
                 ForkJoinTask<?> asyncRun = new RecursiveAction() {
                     @Override
                     protected void compute() {
-                        try {
-                            ParallelTheoryAnchor.this.runWithAssignment(nextAssignment);
-                        } catch (Throwable t) {
-                            sneakyThrow(t);
-                        }
+                        WaitBudgetContext.wrap(waitBudgetContext, () -> {
+                            try {
+                                ParallelTheoryAnchor.this.runWithAssignment(nextAssignment);
+                            } catch (Throwable t) {
+                                sneakyThrow(t);
+                            }
+                        }).run();
                     }
                 };
-                _asyncRuns.addFirst(asyncRun.fork());
+                _asyncRuns.addFirst(ParallelScheduler.forkInCurrentPool(asyncRun));
             }
         }
 
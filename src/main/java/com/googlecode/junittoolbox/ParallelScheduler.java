@@ -1,58 +1,348 @@
 package com.googlecode.junittoolbox;
 
 import com.googlecode.junittoolbox.util.MultiException;
+import org.junit.runner.Description;
+import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.RunnerScheduler;
 
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ForkJoinWorkerThread;
-
-import static java.util.concurrent.ForkJoinTask.inForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
- * Encapsulates the singleton {@link ForkJoinPool} used
- * by {@link ParallelRunner} and {@link ParallelSuite}
- * to execute test classes and test methods concurrently.
+ * Encapsulates the {@link ForkJoinPool}s used by {@link ParallelRunner},
+ * {@link ParallelSuite}, and {@link ParallelParameterized} to execute
+ * test classes and test methods concurrently: the singleton fork join pool
+ * shared by all parallel runners and the named fork join pools
+ * configured with {@link ParallelismConfig @ParallelismConfig}.
+ * If a {@link TimingHistory} is configured, the children
+ * are scheduled longest first (see {@link #longestFirst}).
  */
 class ParallelScheduler implements RunnerScheduler {
 
     static ForkJoinPool forkJoinPool = setUpForkJoinPool();
 
     static ForkJoinPool setUpForkJoinPool() {
-        int numThreads;
+        return setUpForkJoinPool(getDefaultNumThreads(), "JUnit-");
+    }
+
+    private static int getDefaultNumThreads() {
         try {
             String configuredNumThreads = System.getProperty("maxParallelTestThreads");
-            numThreads = Math.max(2, Integer.parseInt(configuredNumThreads));
+            return Math.max(2, Integer.parseInt(configuredNumThreads));
         } catch (Exception ignored) {
             Runtime runtime = Runtime.getRuntime();
-            numThreads = Math.max(2, runtime.availableProcessors());
+            return Math.max(2, runtime.availableProcessors());
         }
-        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
-            if (pool.getPoolSize() >= pool.getParallelism()) {
-                return null;
-            } else {
-                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
-                thread.setName("JUnit-" + thread.getName());
+    }
+
+    private static ForkJoinPool setUpForkJoinPool(int numThreads, String threadNamePrefix) {
+        return new TestForkJoinPool(numThreads, threadNamePrefix);
+    }
+
+    /**
+     * A fork join pool, which never creates more worker threads than its parallelism,
+     * except to compensate for worker threads blocked in {@link ManagedBlocking}
+     * (but never more than its parallelism).
+     */
+    static class TestForkJoinPool extends ForkJoinPool {
+        final AtomicInteger blockedWorkers = new AtomicInteger();
+        // Note: ForkJoinPool.getPoolSize() can not be used to limit the number of
+        // worker threads, because its semantics differ between Java versions ...
+        final AtomicInteger workers = new AtomicInteger();
+
+        TestForkJoinPool(int numThreads, String threadNamePrefix) {
+            super(numThreads, pool -> {
+                TestForkJoinPool testForkJoinPool = (TestForkJoinPool) pool;
+                int maxPoolSize = pool.getParallelism() + Math.min(testForkJoinPool.blockedWorkers.get(), pool.getParallelism());
+                int numWorkers;
+                do {
+                    numWorkers = testForkJoinPool.workers.get();
+                    if (numWorkers >= maxPoolSize) {
+                        return null;
+                    }
+                } while (!testForkJoinPool.workers.compareAndSet(numWorkers, numWorkers + 1));
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                    @Override
+                    protected void onTermination(Throwable exception) {
+                        testForkJoinPool.workers.decrementAndGet();
+                        super.onTermination(exception);
+                    }
+                };
+                thread.setName(threadNamePrefix + thread.getName());
                 return thread;
+            }, null, false);
+        }
+    }
+
+    /**
+     * The named pools configured with {@link ParallelismConfig @ParallelismConfig},
+     * each value is either a {@link ForkJoinPool} or a {@link VirtualThreadExecutor}.
+     */
+    private static final Map<String, Object> NAMED_POOLS = new HashMap<>();
+
+    /** The {@link ParallelismConfig @ParallelismConfig} annotation, which created each named pool. */
+    private static final Map<String, ParallelismConfig> NAMED_POOL_CONFIGS = new HashMap<>();
+
+    /**
+     * The number of threads of each named pool -- <code>threads = 0</code> is resolved
+     * to the default number of threads before it is stored, so that the check for
+     * conflicting <code>@ParallelismConfig</code> annotations does not depend on their order.
+     */
+    private static final Map<String, Integer> NAMED_POOL_THREADS = new HashMap<>();
+
+    /**
+     * For each pool the pools, into which a parallel runner has switched from it.
+     * Used to prevent deadlocks: A parallel runner never switches into another pool,
+     * if this would create a cycle, because then worker threads of both pools could
+     * block each other forever while waiting for their children.
+     */
+    private static final Map<Object, Set<Object>> POOL_SWITCHES = new IdentityHashMap<>();
+
+    /**
+     * Returns a new <code>ParallelScheduler</code> for the given class, which uses the
+     * fork join pool configured with {@link ParallelismConfig @ParallelismConfig}.
+     */
+    static ParallelScheduler forClass(Class<?> klass) throws InitializationError {
+        ParallelScheduler scheduler = new ParallelScheduler(getConfiguredPool(klass));
+        WaitBudget waitBudget = klass.getAnnotation(WaitBudget.class);
+        if (waitBudget != null) {
+            if (waitBudget.time() < 0) {
+                throw new InitializationError("Invalid @WaitBudget(time = " + waitBudget.time() + ") on class " + klass.getName() + " -- must not be negative");
+            }
+            if (waitBudget.failFastAfterTimeouts() < 0) {
+                throw new InitializationError("Invalid @WaitBudget(failFastAfterTimeouts = " + waitBudget.failFastAfterTimeouts() + ") on class " + klass.getName() + " -- must not be negative");
             }
-        };
-        return new ForkJoinPool(numThreads, threadFactory, null, false);
+            scheduler._class = klass;
+            scheduler._waitBudget = waitBudget;
+        }
+        return scheduler;
     }
 
+    /**
+     * Returns the pool configured with {@link ParallelismConfig @ParallelismConfig}
+     * for the given class, or <code>null</code> if the class is not annotated.
+     */
+    private static Object getConfiguredPool(Class<?> klass) throws InitializationError {
+        ParallelismConfig config = klass.getAnnotation(ParallelismConfig.class);
+        if (config == null) {
+            return null;
+        }
+        if (config.threads() < 0) {
+            throw new InitializationError("Invalid @ParallelismConfig(threads = " + config.threads() + ") on class " + klass.getName() + " -- must not be negative");
+        }
+        String poolName = (config.pool().isEmpty() ? klass.getName() : config.pool());
+        // Note: For virtual threads, threads = 0 means an unlimited number of concurrently running children ...
+        int numThreads = (config.threads() == 0 && !config.virtualThreads() ? getDefaultNumThreads() : config.threads());
+        synchronized (NAMED_POOLS) {
+            Object pool = NAMED_POOLS.get(poolName);
+            ParallelismConfig poolConfig = NAMED_POOL_CONFIGS.get(poolName);
+            if (pool == null) {
+                if (config.virtualThreads()) {
+                    pool = VirtualThreadExecutor.create("JUnit-" + poolName + "-", config.threads());
+                }
+                if (pool == null) {
+                    // Note: If virtual threads are not supported, a fork join pool is used instead ...
+                    pool = setUpForkJoinPool(numThreads == 0 ? getDefaultNumThreads() : numThreads, "JUnit-" + poolName + "-");
+                }
+                NAMED_POOLS.put(poolName, pool);
+                NAMED_POOL_CONFIGS.put(poolName, config);
+                NAMED_POOL_THREADS.put(poolName, numThreads);
+            } else if (config.virtualThreads() != poolConfig.virtualThreads()) {
+                throw new InitializationError("Invalid @ParallelismConfig(virtualThreads = " + config.virtualThreads() + ", pool = \"" + poolName + "\") on class " + klass.getName() + " -- the pool has already been configured with virtualThreads = " + poolConfig.virtualThreads());
+            } else if (numThreads != NAMED_POOL_THREADS.get(poolName)) {
+                throw new InitializationError("Invalid @ParallelismConfig(threads = " + config.threads() + ", pool = \"" + poolName + "\") on class " + klass.getName() + " -- the pool has already been configured with " + NAMED_POOL_THREADS.get(poolName) + " threads");
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a parallel runner executed in the pool <code>from</code>
+     * may execute its children in the pool <code>to</code> without risking a deadlock.
+     */
+    private static boolean maySwitch(Object from, Object to) {
+        synchronized (POOL_SWITCHES) {
+            if (isReachable(to, from, new HashSet<>())) {
+                return false;
+            }
+            POOL_SWITCHES.computeIfAbsent(from, pool -> new HashSet<>()).add(to);
+            return true;
+        }
+    }
+
+    private static boolean isReachable(Object from, Object to, Set<Object> visited) {
+        if (from == to) {
+            return true;
+        }
+        if (visited.add(from)) {
+            for (Object next : POOL_SWITCHES.getOrDefault(from, Collections.emptySet())) {
+                if (isReachable(next, to, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the given <code>children</code> of the test (or test suite)
+     * with the given <code>parentName</code> ordered by their duration
+     * recorded in the {@link TimingHistory#getInstance() timing history},
+     * longest first (LPT scheduling). Children with an unknown duration
+     * are put in front, because they might be long running too.
+     * Children with the same (or an unknown) duration keep their order.
+     */
+    static <T> List<T> longestFirst(String parentName, List<T> children, Function<T, Description> describeChild) {
+        return longestFirst(parentName, children, describeChild, TimingHistory.getInstance());
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    static <T> List<T> longestFirst(String parentName, List<T> children, Function<T, Description> describeChild, TimingHistory timingHistory) {
+        if (children.size() < 2 || timingHistory.isEmpty()) {
+            return children;
+        }
+        Map<T, Long> durations = new IdentityHashMap<>();
+        for (T child : children) {
+            long duration = timingHistory.getDurationInNanos(TimingHistory.keyOf(parentName, describeChild.apply(child)));
+            durations.put(child, duration < 0 ? Long.MAX_VALUE : duration);
+        }
+        List<T> result = new ArrayList<>(children);
+        // Note: List.sort is stable, therefore children with the same duration keep their order ...
+        result.sort((child1, child2) -> Long.compare(durations.get(child2), durations.get(child1)));
+        return result;
+    }
+
+    /**
+     * Records the duration of the given <code>child</code> of the test (or test suite)
+     * with the given <code>parentName</code> in the {@link TimingHistory#getInstance() timing history}.
+     */
+    static void recordDuration(String parentName, Description child, long durationInNanos) {
+        TimingHistory timingHistory = TimingHistory.getInstance();
+        if (timingHistory.isEnabled()) {
+            timingHistory.record(TimingHistory.keyOf(parentName, child), durationInNanos);
+        }
+    }
+
+    /**
+     * Returns the pool, which executes the current thread -- either a {@link ForkJoinPool}
+     * or a {@link VirtualThreadExecutor} -- or <code>null</code> if there is none.
+     */
+    private static Object getCurrentPool() {
+        ForkJoinPool currentPool = ForkJoinTask.getPool();
+        return (currentPool != null ? currentPool : VirtualThreadExecutor.current());
+    }
+
+    /**
+     * Executes the given task asynchronously in the given pool.
+     */
+    private static <T extends ForkJoinTask<?>> T fork(T task, Object pool) {
+        if (pool instanceof VirtualThreadExecutor) {
+            ((VirtualThreadExecutor) pool).execute(task);
+        } else if (pool == ForkJoinTask.getPool()) {
+            task.fork();
+        } else {
+            ((ForkJoinPool) pool).execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Executes the given task asynchronously in the pool, which executes the current
+     * thread (or the singleton fork join pool), used by {@link ParallelRunner}
+     * to execute calls to <code>&#64;Theory</code> methods concurrently.
+     */
+    static <T extends ForkJoinTask<?>> T forkInCurrentPool(T task) {
+        Object currentPool = getCurrentPool();
+        return fork(task, currentPool == null ? forkJoinPool : currentPool);
+    }
+
+    /**
+     * Waits until the given task, which was {@link #forkInCurrentPool forked}, is done.
+     */
+    static void join(ForkJoinTask<?> task) {
+        // Note: If the current thread is a virtual thread, its permit is released while waiting ...
+        VirtualThreadExecutor.join(task);
+    }
+
+    /**
+     * Waits until the given task, which is executed in another pool than the current thread, is done.
+     */
+    private static void joinTaskOfOtherPool(ForkJoinTask<?> task) throws Exception {
+        if (!task.isDone()) {
+            // The current thread can not help executing the task, therefore
+            // its fork join pool may start another worker thread meanwhile ...
+            ManagedBlocking.call(() -> {
+                VirtualThreadExecutor.join(task);
+                return null;
+            });
+        }
+        task.join();
+    }
+
+    /** Either a {@link ForkJoinPool} or a {@link VirtualThreadExecutor} or <code>null</code> */
+    private final Object _configuredPool;
     private final Deque<ForkJoinTask<?>> _asyncTasks = new LinkedList<>();
     private Runnable _lastScheduledChild;
+    private Object _pool;
+    private Class<?> _class;
+    private WaitBudget _waitBudget;
+    private boolean _waitBudgetContextCreated;
+    private WaitBudgetContext _waitBudgetContext;
+
+    /**
+     * Creates a <code>ParallelScheduler</code>, which executes the children in the given
+     * pool (a {@link ForkJoinPool} or a {@link VirtualThreadExecutor}), if <code>null</code>
+     * is given, the children are executed in the pool of the current thread
+     * (or the singleton fork join pool).
+     */
+    ParallelScheduler(Object pool) {
+        _configuredPool = pool;
+    }
+
+    /**
+     * Returns the pool, in which the children are executed.
+     */
+    private Object getPool() {
+        if (_pool == null) {
+            Object currentPool = getCurrentPool();
+            if (_configuredPool == null) {
+                _pool = (currentPool == null ? forkJoinPool : currentPool);
+            } else if (currentPool == null || currentPool == _configuredPool || maySwitch(currentPool, _configuredPool)) {
+                _pool = _configuredPool;
+            } else {
+                _pool = currentPool;
+            }
+        }
+        return _pool;
+    }
+
+    /**
+     * Returns the {@link WaitBudgetContext} for the children -- it is created,
+     * when the first child is scheduled (in the thread of the parent runner),
+     * so that the deadline starts, when the children are executed.
+     */
+    private WaitBudgetContext getWaitBudgetContext() {
+        if (!_waitBudgetContextCreated) {
+            WaitBudgetContext parent = WaitBudgetContext.current();
+            _waitBudgetContext = (_waitBudget == null ? parent : new WaitBudgetContext(_class, _waitBudget, parent));
+            _waitBudgetContextCreated = true;
+        }
+        return _waitBudgetContext;
+    }
 
     @Override
     public void schedule(Runnable childStatement) {
+        // Make the wait budget available in the thread, which executes the child ...
+        childStatement = WaitBudgetContext.wrap(getWaitBudgetContext(), childStatement);
         if (_lastScheduledChild != null) {
             // Execute previously scheduled child asynchronously ...
-            if (inForkJoinPool()) {
-                _asyncTasks.addFirst(ForkJoinTask.adapt(_lastScheduledChild).fork());
-            } else {
-                _asyncTasks.addFirst(forkJoinPool.submit(_lastScheduledChild));
-            }
+            _asyncTasks.addFirst(fork(ForkJoinTask.adapt(_lastScheduledChild), getPool()));
         }
         // Note: We don't schedule the childStatement immediately here,
         // but remember it, so that we can synchronously execute the
@@ -66,20 +356,32 @@ class ParallelScheduler implements RunnerScheduler {
     public void finished() {
         MultiException me = new MultiException();
         if (_lastScheduledChild != null) {
-            if (inForkJoinPool()) {
+            Object pool = getPool();
+            boolean inPool = (getCurrentPool() == pool);
+            if (inPool) {
                 // Execute the last scheduled child in the current thread ...
                 try { _lastScheduledChild.run(); } catch (Throwable t) { me.add(t); }
             } else {
-                // Submit the last scheduled child to the ForkJoinPool too,
+                // Submit the last scheduled child to the pool too,
                 // because all tests should run in the worker threads ...
-                _asyncTasks.addFirst(forkJoinPool.submit(_lastScheduledChild));
+                _asyncTasks.addFirst(fork(ForkJoinTask.adapt(_lastScheduledChild), pool));
             }
             // Make sure all asynchronously executed children are done, before we return ...
             for (ForkJoinTask<?> task : _asyncTasks) {
                 // Note: Because we have added all tasks via addFirst into _asyncTasks,
                 // task.join() is able to steal tasks from other worker threads, if there
                 // are tasks, which have not been started yet.
-                try { task.join(); } catch (Throwable t) { me.add(t); }
+                try {
+                    if (inPool) {
+                        join(task);
+                    } else {
+                        joinTaskOfOtherPool(task);
+                    }
+                } catch (Throwable t) { me.add(t); }
+            }
+            if (getCurrentPool() == null) {
+                // All children of the outermost parallel runner are done ...
+                TimingHistory.getInstance().flush();
             }
             me.throwIfNotEmpty();
         }
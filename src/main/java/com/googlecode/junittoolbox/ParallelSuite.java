@@ -1,8 +1,12 @@
 package com.googlecode.junittoolbox;
 
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.RunnerBuilder;
 
+import java.util.List;
+
 /**
  * An extension of the {@link WildcardPatternSuite} runner, which executes
  * its children classes concurrently. You can specify the maximum number
@@ -31,12 +35,29 @@ import org.junit.runners.model.RunnerBuilder;
  * or with <code>@RunWith(ParallelRunner.class)</code>, there will never be
  * more test threads than specified (or the number of available processors), because
  * <code>ParallelSuite</code> and <code>{@link ParallelRunner}</code> share a singleton
- * fork join pool.
+ * fork join pool. If some of your tests need a different number of threads (e.g. IO bound
+ * browser tests), you can give them a fork join pool of their own with the
+ * <code>{@link ParallelismConfig @ParallelismConfig}</code> annotation.
+ * <p>If you specify a file using the system property <code>testTimingHistoryFile</code>,
+ * the duration of each child class is recorded in this file (see {@link TimingHistory})
+ * and on subsequent runs the children classes with the longest duration are started first.
  */
 public class ParallelSuite extends WildcardPatternSuite {
 
     public ParallelSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
         super(klass, builder);
-        setScheduler(new ParallelScheduler());
+        setScheduler(ParallelScheduler.forClass(klass));
+    }
+
+    @Override
+    protected List<Runner> getChildren() {
+        return ParallelScheduler.longestFirst(getName(), super.getChildren(), this::describeChild);
+    }
+
+    @Override
+    protected void runChild(Runner runner, RunNotifier notifier) {
+        long startTime = System.nanoTime();
+        super.runChild(runner, notifier);
+        ParallelScheduler.recordDuration(getName(), describeChild(runner), System.nanoTime() - startTime);
     }
 }
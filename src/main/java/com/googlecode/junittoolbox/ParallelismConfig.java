@@ -0,0 +1,62 @@
+package com.googlecode.junittoolbox;
+
+import java.lang.annotation.*;
+
+/**
+ * This annotation can be used with the {@link ParallelSuite},
+ * the {@link ParallelRunner}, and the {@link ParallelParameterized} runner
+ * to execute the children of the annotated class in a separate fork join pool,
+ * instead of the fork join pool shared by all other parallel runners,
+ * whose size is specified with the system property <code>maxParallelTestThreads</code>.
+ * Example:<pre>
+ *     &#64;RunWith(ParallelSuite.class)
+ *     &#64;SuiteClasses("&#42;&#42;/&#42;BrowserTest.class")
+ *     &#64;ParallelismConfig(threads = 16, pool = "io")
+ *     public class AllBrowserTests {}
+ * </pre>
+ * All classes with the same <code>pool</code> name share one fork join pool.
+ * A parallel runner for a class without this annotation executes its children
+ * in the pool of its enclosing parallel runner (or in the shared fork join pool,
+ * if there is none).
+ * <p>Note: To prevent deadlocks, a parallel runner never switches from one
+ * fork join pool into another one, if the other pool (directly or indirectly)
+ * already switched into the first one -- e.g. if a suite in the pool <code>"io"</code>
+ * contains a class in the pool <code>"cpu"</code>, a class in the pool <code>"io"</code>
+ * nested in a suite in the pool <code>"cpu"</code> is executed in the pool <code>"cpu"</code>.
+ * <p>If your tests are mostly blocked (e.g. waiting for sockets, JDBC calls, or
+ * {@link PollingWait#until}), you can execute each child in a virtual thread
+ * instead (requires Java 21 or later, on older JVMs a fork join pool is used):<pre>
+ *     &#64;RunWith(ParallelSuite.class)
+ *     &#64;SuiteClasses("&#42;&#42;/&#42;IntegrationTest.class")
+ *     &#64;ParallelismConfig(virtualThreads = true, threads = 200, pool = "io")
+ *     public class AllIntegrationTests {}
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface ParallelismConfig {
+    /**
+     * The maximum number of threads of the fork join pool, if not
+     * specified, the number of {@link Runtime#availableProcessors() available processors}
+     * (or the value of the system property <code>maxParallelTestThreads</code>) is used.
+     * If several classes specify the same <code>pool</code>, they must
+     * not specify a different number of threads (not specifying it counts
+     * as specifying the default number of threads).
+     * If <code>virtualThreads</code> is <code>true</code>, this is the maximum
+     * number of concurrently running children, if not specified, it is unlimited.
+     */
+    int threads() default 0;
+
+    /**
+     * The name of the fork join pool, if not specified, the
+     * annotated class gets a fork join pool of its own.
+     */
+    String pool() default "";
+
+    /**
+     * If <code>true</code>, each child is executed in a new virtual thread
+     * instead of a worker thread of a fork join pool.
+     */
+    boolean virtualThreads() default false;
+}
@@ -0,0 +1,106 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines how long {@link PollingWait} waits between two attempts.
+ * A fixed poll interval is a bad compromise: Conditions, which become true after
+ * a few milliseconds, are detected late, if the interval is long, and conditions,
+ * which take seconds, waste CPU time, if the interval is short. Therefore you can
+ * let the interval grow with the number of attempts, e.g.:<pre>
+ *     private PollingWait wait = new PollingWait().timeoutAfter(5, SECONDS)
+ *                                                 .pollStrategy(PollStrategy.exponential(1, 100, MILLISECONDS));
+ * </pre>
+ *
+ * @since 2.6
+ */
+@FunctionalInterface
+public interface PollStrategy {
+
+    /**
+     * Returns the time (in nanoseconds) between the start of the given attempt
+     * and the start of the next attempt, <code>1</code> is the first attempt.
+     * If the attempt took longer than the returned time, the next attempt starts
+     * immediately. If <code>0</code> is returned, {@link PollingWait} only
+     * calls {@link Thread#yield} before the next attempt.
+     */
+    long getPollIntervalNanos(int attempt);
+
+    /**
+     * Returns a <code>PollStrategy</code> with a fixed poll interval,
+     * see {@link PollingWait#pollEvery}.
+     */
+    static PollStrategy fixed(long timeAmount, @Nonnull TimeUnit timeUnit) {
+        if (timeAmount <= 0) {
+            throw new IllegalArgumentException("Invalid timeAmount: " + timeAmount + " -- must be greater than 0");
+        }
+        long intervalNanos = timeUnit.toNanos(timeAmount);
+        return attempt -> intervalNanos;
+    }
+
+    /**
+     * Returns a <code>PollStrategy</code>, which starts with the given
+     * <code>initialInterval</code> and doubles it after each attempt,
+     * until the given <code>maxInterval</code> is reached.
+     */
+    static PollStrategy exponential(long initialInterval, long maxInterval, @Nonnull TimeUnit timeUnit) {
+        if (initialInterval <= 0) {
+            throw new IllegalArgumentException("Invalid initialInterval: " + initialInterval + " -- must be greater than 0");
+        }
+        if (maxInterval < initialInterval) {
+            throw new IllegalArgumentException("Invalid maxInterval: " + maxInterval + " -- must not be less than initialInterval");
+        }
+        long initialNanos = timeUnit.toNanos(initialInterval);
+        long maxNanos = timeUnit.toNanos(maxInterval);
+        return attempt -> {
+            int shift = Math.min(attempt - 1, 62);
+            long intervalNanos = initialNanos << shift;
+            return (intervalNanos >>> shift) != initialNanos ? maxNanos : Math.min(intervalNanos, maxNanos);
+        };
+    }
+
+    /**
+     * Returns a <code>PollStrategy</code>, which multiplies the given
+     * <code>initialInterval</code> with the Fibonacci numbers (1, 1, 2, 3, 5, 8, ...),
+     * until the given <code>maxInterval</code> is reached -- the interval grows
+     * slower than with an {@link #exponential} strategy.
+     */
+    static PollStrategy fibonacci(long initialInterval, long maxInterval, @Nonnull TimeUnit timeUnit) {
+        if (initialInterval <= 0) {
+            throw new IllegalArgumentException("Invalid initialInterval: " + initialInterval + " -- must be greater than 0");
+        }
+        if (maxInterval < initialInterval) {
+            throw new IllegalArgumentException("Invalid maxInterval: " + maxInterval + " -- must not be less than initialInterval");
+        }
+        long initialNanos = timeUnit.toNanos(initialInterval);
+        long maxNanos = timeUnit.toNanos(maxInterval);
+        return attempt -> {
+            long previous = 0;
+            long intervalNanos = initialNanos;
+            for (int i = 1; i < attempt && intervalNanos < maxNanos; ++i) {
+                long next = previous + intervalNanos;
+                previous = intervalNanos;
+                intervalNanos = next;
+            }
+            return Math.min(intervalNanos, maxNanos);
+        };
+    }
+
+    /**
+     * Returns a <code>PollStrategy</code>, which retries the given number of
+     * attempts immediately (only yielding the CPU to other threads), so that
+     * conditions, which become true within microseconds, are detected without delay,
+     * and afterwards polls with the given fixed interval.
+     */
+    static PollStrategy spinThenSleep(int spins, long sleepAmount, @Nonnull TimeUnit timeUnit) {
+        if (spins < 0) {
+            throw new IllegalArgumentException("Invalid spins: " + spins + " -- must not be negative");
+        }
+        if (sleepAmount <= 0) {
+            throw new IllegalArgumentException("Invalid sleepAmount: " + sleepAmount + " -- must be greater than 0");
+        }
+        long sleepNanos = timeUnit.toNanos(sleepAmount);
+        return attempt -> attempt <= spins ? 0 : sleepNanos;
+    }
+}
@@ -1,12 +1,16 @@
 package com.googlecode.junittoolbox;
 
+import com.googlecode.junittoolbox.util.StackTraceRenderer;
+
 import javax.annotation.Nonnull;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertTrue;
 
@@ -53,7 +57,13 @@ import static org.junit.Assert.assertTrue;
 public class PollingWait {
 
     private long timeoutMillis = 30000;
-    private long pollIntervalMillis = 50;
+    private PollStrategy pollStrategy = PollStrategy.fixed(50, TimeUnit.MILLISECONDS);
+    // The wake-up sources registered via wakeUpOn ...
+    private final List<WakeupSignal> wakeupSources = new ArrayList<>();
+    // Signaled by the CompletionStages registered via wakeUpOn ...
+    private WakeupSignal completionStageSignal;
+    // Package private for testing ...
+    PollingWaitStatistics statistics = PollingWaitStatistics.getInstance();
 
     /**
      * Default: 30 seconds.
@@ -70,10 +80,55 @@ public class PollingWait {
      * Default: 50 milliseconds.
      */
     public PollingWait pollEvery(long timeAmount, @Nonnull TimeUnit timeUnit) {
-        if (timeAmount <= 0) {
-            throw new IllegalArgumentException("Invalid timeAmount: " + timeAmount + " -- must be greater than 0");
+        pollStrategy = PollStrategy.fixed(timeAmount, timeUnit);
+        return this;
+    }
+
+    /**
+     * Sets the {@link PollStrategy}, which determines the time between two attempts,
+     * e.g. <code>PollStrategy.exponential(1, 100, MILLISECONDS)</code> detects
+     * conditions, which become true quickly, with a short delay, without wasting
+     * CPU time for conditions, which take long. Default: {@link #pollEvery every} 50 milliseconds.
+     *
+     * @since 2.6
+     */
+    public PollingWait pollStrategy(@Nonnull PollStrategy pollStrategy) {
+        this.pollStrategy = pollStrategy;
+        return this;
+    }
+
+    /**
+     * Lets this <code>PollingWait</code> start the next attempt immediately,
+     * when the given {@link WakeupSignal} is {@link WakeupSignal#signal() signaled},
+     * instead of waiting for the end of the poll interval.
+     * Can be called several times (also together with {@link #wakeUpOn(CompletionStage)})
+     * to wake up on several sources.
+     *
+     * @since 2.6
+     */
+    public PollingWait wakeUpOn(@Nonnull WakeupSignal wakeupSignal) {
+        wakeupSources.add(wakeupSignal);
+        return this;
+    }
+
+    /**
+     * Lets this <code>PollingWait</code> start the next attempt immediately,
+     * when the given <code>CompletionStage</code> (e.g. a <code>CompletableFuture</code>)
+     * is completed, instead of waiting for the end of the poll interval.
+     * Can be called several times (also together with {@link #wakeUpOn(WakeupSignal)})
+     * to wake up on several sources.
+     *
+     * @since 2.6
+     */
+    public PollingWait wakeUpOn(@Nonnull CompletionStage<?> completionStage) {
+        // Note: A WakeupSignal passed to wakeUpOn might be shared with other PollingWaits,
+        // therefore the CompletionStages signal a WakeupSignal of their own ...
+        if (completionStageSignal == null) {
+            completionStageSignal = new WakeupSignal();
+            wakeupSources.add(completionStageSignal);
         }
-        pollIntervalMillis = timeUnit.toMillis(timeAmount);
+        WakeupSignal signal = completionStageSignal;
+        completionStage.whenComplete((result, error) -> signal.signal());
         return this;
     }
 
@@ -83,36 +138,27 @@ public class PollingWait {
      * {@link Exception} or until the configured {@link #timeoutAfter timeout}
      * is reached, in which case an {@link AssertionError} will be thrown.
      * Calls {@link Thread#sleep} before each retry using the configured
-     * {@link #pollEvery interval} to free the CPU for other threads/processes.
+     * {@link #pollEvery interval} (or {@link #pollStrategy poll strategy})
+     * to free the CPU for other threads/processes -- unless it is
+     * {@link #wakeUpOn woken up} earlier.
      */
     public void until(@Nonnull RunnableAssert runnableAssert) {
-        List<Throwable> errors = new ArrayList<>();
-        long startTime = System.currentTimeMillis();
-        long timeoutReached = startTime + timeoutMillis;
-        boolean success = false;
-        do {
-            try {
-                runnableAssert.run();
-                success = true;
-            } catch (Throwable t) {
-                if (errors.size() > 0 && startTime > timeoutReached) {
-                    StringBuilder sb = new StringBuilder();
-                    sb.append(runnableAssert);
-                    sb.append(" did not succeed within ");
-                    appendNiceDuration(sb, timeoutMillis);
-                    appendErrors(sb, errors, t);
-                    throw new AssertionError(sb.toString());
-                }
-                if (errors.size() < 2) {
-                    errors.add(t);
-                }
-                long sleepTime = pollIntervalMillis - (System.currentTimeMillis() - startTime);
-                if (sleepTime > 0) {
+        Polling polling = new Polling(runnableAssert);
+        try {
+            while (!polling.attempt()) {
+                long pollIntervalNanos = polling.getPollIntervalNanos();
+                long sleepTime = polling.getRemainingPollIntervalNanos();
+                if (polling.wakeupSignal != null) {
+                    awaitWakeup(polling.wakeupSignal, polling.generation, sleepTime);
+                } else if (sleepTime > 0) {
                     sleep(sleepTime);
+                } else if (pollIntervalNanos <= 0) {
+                    Thread.yield();
                 }
-                startTime = System.currentTimeMillis();
             }
-        } while (!success);
+        } finally {
+            polling.stopListening();
+        }
     }
 
     /**
@@ -121,17 +167,450 @@ public class PollingWait {
      * {@link #timeoutAfter timeout} is reached, in which case an
      * {@link AssertionError} will be thrown. Calls {@link Thread#sleep}
      * before each retry using the configured {@link #pollEvery interval}
-     * to free the CPU for other threads/processes.
+     * (or {@link #pollStrategy poll strategy}) to free the CPU for other threads/processes.
      *
      * @since 2.0
      */
     public void until(@Nonnull Callable<Boolean> shouldBeTrue) {
-        until(new RunnableAssert(shouldBeTrue.toString()) {
+        until(convertToRunnableAssert(shouldBeTrue));
+    }
+
+    /**
+     * Like {@link #until(RunnableAssert)}, but does not block the current thread:
+     * Returns a <code>CompletableFuture</code>, which is completed, when the given
+     * <code>runnableAssert</code> succeeds, or completed exceptionally with an
+     * {@link AssertionError}, when the configured {@link #timeoutAfter timeout} is reached.
+     * All attempts are executed by a pool of daemon threads shared by all <code>PollingWait</code>s,
+     * the next attempt is scheduled instead of sleeping, so that many waits can run
+     * concurrently without occupying a thread each (e.g. a worker thread of one of the
+     * parallel runners). The pool starts another thread, if all of its threads are busy,
+     * so a blocking <code>runnableAssert</code> does not delay the attempts of other waits.
+     * Cancelling the returned <code>CompletableFuture</code> stops the polling.
+     * Example:<pre>
+     *     CompletableFuture.allOf(wait.untilAsync(() -&gt; server1.isStarted()),
+     *                             wait.untilAsync(() -&gt; server2.isStarted())).join();
+     * </pre>
+     *
+     * @since 2.6
+     */
+    public CompletableFuture<Void> untilAsync(@Nonnull RunnableAssert runnableAssert) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Scheduler.EXECUTOR.execute(new AsyncPolling(runnableAssert, future));
+        return future;
+    }
+
+    /**
+     * Like {@link #until(Callable)}, but does not block the current thread,
+     * see {@link #untilAsync(RunnableAssert)}.
+     *
+     * @since 2.6
+     */
+    public CompletableFuture<Void> untilAsync(@Nonnull Callable<Boolean> shouldBeTrue) {
+        return untilAsync(convertToRunnableAssert(shouldBeTrue));
+    }
+
+    /**
+     * Waits until all of the given <code>RunnableAsserts</code> succeed: Like
+     * {@link #untilAsync(RunnableAssert)} they are executed concurrently, each one is
+     * no longer executed, after it succeeded, so that the total wait time is the wait
+     * time of the slowest one (instead of the sum of all wait times). If some of them
+     * do not succeed within the configured {@link #timeoutAfter timeout}, an
+     * {@link AssertionError} describing all of them is thrown.
+     *
+     * @since 2.6
+     */
+    public void untilAll(@Nonnull RunnableAssert runnableAssert, RunnableAssert... moreRunnableAsserts) {
+        untilAll(asList(runnableAssert, moreRunnableAsserts));
+    }
+
+    /**
+     * See {@link #untilAll(RunnableAssert, RunnableAssert...)}.
+     *
+     * @since 2.6
+     */
+    public void untilAll(@Nonnull Collection<? extends RunnableAssert> runnableAsserts) {
+        List<CompletableFuture<Void>> futures = startAll(runnableAsserts);
+        List<Throwable> errors = new ArrayList<>();
+        try {
+            for (CompletableFuture<Void> future : futures) {
+                Throwable error = await(future);
+                if (error != null) {
+                    errors.add(error);
+                }
+            }
+        } finally {
+            cancelAll(futures);
+        }
+        if (!errors.isEmpty()) {
+            throw createCombinedError(errors.size() + " of " + futures.size() + " RunnableAsserts did not succeed", errors);
+        }
+    }
+
+    /**
+     * Waits until one of the given <code>RunnableAsserts</code> succeeds: Like
+     * {@link #untilAsync(RunnableAssert)} they are executed concurrently,
+     * the others are no longer executed, after one of them succeeded.
+     * If none of them succeeds within the configured {@link #timeoutAfter timeout},
+     * an {@link AssertionError} describing all of them is thrown.
+     *
+     * @since 2.6
+     */
+    public void untilAny(@Nonnull RunnableAssert runnableAssert, RunnableAssert... moreRunnableAsserts) {
+        untilAny(asList(runnableAssert, moreRunnableAsserts));
+    }
+
+    /**
+     * See {@link #untilAny(RunnableAssert, RunnableAssert...)}.
+     *
+     * @since 2.6
+     */
+    public void untilAny(@Nonnull Collection<? extends RunnableAssert> runnableAsserts) {
+        List<CompletableFuture<Void>> futures = startAll(runnableAsserts);
+        CompletableFuture<Void> anySucceeded = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (CompletableFuture<Void> future : futures) {
+            future.whenComplete((result, error) -> {
+                if (error == null) {
+                    anySucceeded.complete(null);
+                } else if (remaining.decrementAndGet() == 0) {
+                    anySucceeded.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            if (await(anySucceeded) == null) {
+                return;
+            }
+        } finally {
+            cancelAll(futures);
+        }
+        List<Throwable> errors = new ArrayList<>();
+        for (CompletableFuture<Void> future : futures) {
+            errors.add(await(future));
+        }
+        throw createCombinedError("None of " + futures.size() + " RunnableAsserts succeeded", errors);
+    }
+
+    private static List<RunnableAssert> asList(@Nonnull RunnableAssert runnableAssert, RunnableAssert... moreRunnableAsserts) {
+        List<RunnableAssert> runnableAsserts = new ArrayList<>(1 + moreRunnableAsserts.length);
+        runnableAsserts.add(runnableAssert);
+        Collections.addAll(runnableAsserts, moreRunnableAsserts);
+        return runnableAsserts;
+    }
+
+    private List<CompletableFuture<Void>> startAll(Collection<? extends RunnableAssert> runnableAsserts) {
+        if (runnableAsserts.isEmpty()) {
+            throw new IllegalArgumentException("Invalid runnableAsserts: [] -- must not be empty");
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(runnableAsserts.size());
+        for (RunnableAssert runnableAssert : runnableAsserts) {
+            futures.add(untilAsync(runnableAssert));
+        }
+        return futures;
+    }
+
+    private static void cancelAll(List<CompletableFuture<Void>> futures) {
+        for (CompletableFuture<Void> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Waits until the given future is completed, returns <code>null</code>
+     * if it has been completed normally, otherwise the error.
+     */
+    @Nullable
+    private static Throwable await(CompletableFuture<Void> future) {
+        try {
+            // Note: If the current thread is a worker thread of a fork join pool,
+            // the pool may start another worker thread meanwhile ...
+            ManagedBlocking.call(future::get);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Got interrupted.", e);
+        } catch (Exception e) {
+            // Can not happen, because Future.get throws no other checked exception ...
+            throw new RuntimeException(e);
+        }
+    }
+
+    private AssertionError createCombinedError(String summary, List<Throwable> errors) {
+        StackTraceRenderer renderer = new StackTraceRenderer().append(summary).append(":");
+        for (Throwable error : errors) {
+            renderer.append(EXCEPTION_SEPARATOR);
+            if (error instanceof AssertionError) {
+                // The message of an AssertionError thrown by a PollingWait already contains all details ...
+                renderer.append("\t").append(String.valueOf(error.getMessage()));
+            } else {
+                renderer.append("\t").appendStackTrace(error);
+            }
+        }
+        renderer.append(EXCEPTION_SEPARATOR);
+        AssertionError combinedError = new AssertionError(renderer.toString("\n\t..." + EXCEPTION_SEPARATOR));
+        if (renderer.isTruncated()) {
+            // Make the full details of all errors available ...
+            for (Throwable error : errors) {
+                combinedError.addSuppressed(error);
+            }
+        }
+        return combinedError;
+    }
+
+    /**
+     * Returns the first stack frame of the current thread outside of <code>PollingWait</code>,
+     * or the description of the given <code>runnableAssert</code> if there is none.
+     */
+    private static String findCallSite(RunnableAssert runnableAssert) {
+        String className = PollingWait.class.getName();
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!element.getClassName().equals(className) && !element.getClassName().startsWith(className + "$")) {
+                return element.toString();
+            }
+        }
+        return runnableAssert.toString();
+    }
+
+    private static RunnableAssert convertToRunnableAssert(@Nonnull Callable<Boolean> shouldBeTrue) {
+        return new RunnableAssert(shouldBeTrue.toString()) {
             @Override
             public void run() throws Exception {
                 assertTrue(shouldBeTrue.call());
             }
-        });
+        };
+    }
+
+    /**
+     * The state of one call of {@link #until} or {@link #untilAsync} -- the
+     * configuration of the <code>PollingWait</code> is copied, so that it
+     * can be changed meanwhile.
+     */
+    private class Polling {
+        final RunnableAssert runnableAssert;
+        final long timeoutMillis = PollingWait.this.timeoutMillis;
+        final PollStrategy pollStrategy = PollingWait.this.pollStrategy;
+        final List<WakeupSignal> wakeupSources = new ArrayList<>(PollingWait.this.wakeupSources);
+        // Signaled by all wake-up sources, while this polling is running ...
+        final WakeupSignal wakeupSignal;
+        final Runnable wakeupListener;
+        final PollingWaitStatistics statistics = PollingWait.this.statistics;
+        final WaitBudgetContext waitBudget = WaitBudgetContext.current();
+        final String callSite;
+        final long timeoutReached;
+        final boolean limitedByWaitBudget;
+        final List<Throwable> errors = new ArrayList<>();
+        long firstStartTime;
+        long startTime;
+        long runNanos;
+        int attempt;
+        long generation;
+
+        Polling(RunnableAssert runnableAssert) {
+            this.runnableAssert = runnableAssert;
+            // Note: The call site is determined in the calling thread (even for untilAsync),
+            // but only if statistics are recorded or a circuit breaker is used, because this is expensive ...
+            boolean hasCircuitBreaker = (waitBudget != null && waitBudget.hasCircuitBreaker());
+            callSite = (statistics.isEnabled() || hasCircuitBreaker ? findCallSite(runnableAssert) : null);
+            long timeoutReached = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            limitedByWaitBudget = (waitBudget != null && waitBudget.hasDeadline() && waitBudget.getDeadline() - timeoutReached < 0);
+            this.timeoutReached = (limitedByWaitBudget ? waitBudget.getDeadline() : timeoutReached);
+            if (wakeupSources.isEmpty()) {
+                wakeupSignal = null;
+                wakeupListener = null;
+            } else {
+                wakeupSignal = new WakeupSignal();
+                wakeupListener = wakeupSignal::signal;
+                for (WakeupSignal wakeupSource : wakeupSources) {
+                    wakeupSource.addListener(wakeupListener);
+                }
+            }
+        }
+
+        /**
+         * Removes the listener registered at the wake-up sources, which
+         * are often shared by many <code>PollingWait</code>s, so that they
+         * do not collect a listener for each finished polling.
+         */
+        void stopListening() {
+            if (wakeupListener != null) {
+                for (WakeupSignal wakeupSource : wakeupSources) {
+                    wakeupSource.removeListener(wakeupListener);
+                }
+            }
+        }
+
+        /**
+         * Executes the <code>RunnableAssert</code> once, returns <code>true</code>
+         * if it succeeded, <code>false</code> if it should be retried, or throws
+         * an <code>AssertionError</code> if the timeout is reached.
+         */
+        boolean attempt() {
+            ++attempt;
+            startTime = System.nanoTime();
+            if (attempt == 1) {
+                firstStartTime = startTime;
+            }
+            // Remember the generation of the wake-up signal before the attempt,
+            // so that a signal during the attempt is not lost ...
+            generation = (wakeupSignal == null ? 0 : wakeupSignal.getGeneration());
+            try {
+                runnableAssert.run();
+                record(false);
+                return true;
+            } catch (Throwable t) {
+                boolean failFast = (waitBudget != null && callSite != null && waitBudget.isCircuitOpen(callSite));
+                // Note: Unless the wait budget is exhausted, at least two attempts are made ...
+                if (failFast || ((errors.size() > 0 || limitedByWaitBudget) && startTime - timeoutReached > 0)) {
+                    record(true);
+                    StringBuilder sb = new StringBuilder();
+                    sb.append(runnableAssert);
+                    if (failFast) {
+                        sb.append(" did not succeed -- failed fast, because of previous timeouts at ").append(callSite);
+                        sb.append(" (see ").append(waitBudget.describeCircuitBreaker()).append(")");
+                    } else if (limitedByWaitBudget) {
+                        sb.append(" did not succeed before the deadline of ").append(waitBudget.describeDeadline());
+                    } else {
+                        sb.append(" did not succeed within ");
+                        appendNiceDuration(sb, timeoutMillis);
+                    }
+                    StackTraceRenderer renderer = new StackTraceRenderer().append(sb);
+                    appendErrors(renderer, errors, t);
+                    AssertionError error = new AssertionError(renderer.toString("\n\t..." + EXCEPTION_SEPARATOR));
+                    if (renderer.isTruncated()) {
+                        // Make the full stack trace of the last error available ...
+                        error.initCause(t);
+                    }
+                    throw error;
+                }
+                if (errors.size() < 2) {
+                    errors.add(t);
+                }
+                runNanos += System.nanoTime() - startTime;
+                return false;
+            }
+        }
+
+        private void record(boolean timedOut) {
+            long endTime = System.nanoTime();
+            runNanos += endTime - startTime;
+            if (waitBudget != null && callSite != null) {
+                if (timedOut) {
+                    waitBudget.recordTimeout(callSite);
+                } else {
+                    waitBudget.recordSuccess(callSite);
+                }
+            }
+            if (callSite != null) {
+                long totalNanos = endTime - firstStartTime;
+                statistics.record(callSite, attempt, totalNanos, totalNanos - runNanos, timedOut);
+            }
+        }
+
+        long getPollIntervalNanos() {
+            return pollStrategy.getPollIntervalNanos(attempt);
+        }
+
+        /**
+         * Returns the time until the next attempt should start.
+         */
+        long getRemainingPollIntervalNanos() {
+            return getPollIntervalNanos() - (System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Executes one attempt each time it is run by the {@link Scheduler#EXECUTOR}
+     * and schedules the next attempt, if the attempt failed.
+     */
+    private class AsyncPolling extends Polling implements Runnable {
+        private final CompletableFuture<Void> future;
+
+        AsyncPolling(RunnableAssert runnableAssert, CompletableFuture<Void> future) {
+            super(runnableAssert);
+            this.future = future;
+            // Stop listening, even if the future is cancelled ...
+            future.whenComplete((result, error) -> stopListening());
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                // The future has been cancelled ...
+                return;
+            }
+            try {
+                if (attempt()) {
+                    stopListening();
+                    future.complete(null);
+                    return;
+                }
+            } catch (Throwable t) {
+                stopListening();
+                future.completeExceptionally(t);
+                return;
+            }
+            NextAttempt nextAttempt = new NextAttempt();
+            if (wakeupSignal != null) {
+                wakeupSignal.addListener(nextAttempt);
+                if (wakeupSignal.getGeneration() != generation) {
+                    nextAttempt.run();
+                    return;
+                }
+            }
+            nextAttempt.timer = Scheduler.TIMER.schedule(nextAttempt, Math.max(0, getRemainingPollIntervalNanos()), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Starts the next attempt, when the poll interval has elapsed
+         * or when the wake-up signal is signaled, whatever happens first.
+         */
+        private class NextAttempt implements Runnable {
+            private final AtomicBoolean started = new AtomicBoolean();
+            volatile ScheduledFuture<?> timer;
+
+            @Override
+            public void run() {
+                if (started.compareAndSet(false, true)) {
+                    if (wakeupSignal != null) {
+                        wakeupSignal.removeListener(this);
+                    }
+                    ScheduledFuture<?> timer = this.timer;
+                    if (timer != null) {
+                        timer.cancel(false);
+                    }
+                    Scheduler.EXECUTOR.execute(AsyncPolling.this);
+                }
+            }
+        }
+    }
+
+    /**
+     * The daemon threads of {@link #untilAsync}: The attempts are executed by a cached
+     * thread pool, which grows, if attempts block, and stops threads idle for a minute.
+     * The single timer thread only hands over the next attempts to this pool, so that
+     * it is never blocked by a <code>RunnableAssert</code>.
+     */
+    private static class Scheduler {
+        static final ExecutorService EXECUTOR;
+        static final ScheduledThreadPoolExecutor TIMER;
+        static {
+            AtomicInteger threadCount = new AtomicInteger();
+            EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "PollingWait-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "PollingWait-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
     }
 
     private void appendNiceDuration(StringBuilder sb, long millis) {
@@ -148,36 +627,53 @@ public class PollingWait {
 
     private static final String EXCEPTION_SEPARATOR = "\n\t______________________________________________________________________\n";
 
-    private void appendErrors(StringBuilder sb, List<Throwable> errors, Throwable lastError) {
-        sb.append(EXCEPTION_SEPARATOR);
-        sb.append("\t1st error: ");
-        StringWriter sw = new StringWriter();
-        errors.get(0).printStackTrace(new PrintWriter(sw));
-        sb.append(sw.toString().replace("\n", "\n\t").trim());
+    private void appendErrors(StackTraceRenderer renderer, List<Throwable> errors, Throwable lastError) {
+        // Note: errors is empty, if the first attempt failed fast ...
+        if (errors.size() >= 1) {
+            renderer.append(EXCEPTION_SEPARATOR);
+            renderer.append("\t1st error: ").appendStackTrace(errors.get(0));
+        }
         if (errors.size() >= 2) {
-            sb.append(EXCEPTION_SEPARATOR);
-            sb.append("\t2nd error: ");
-            sw = new StringWriter();
-            errors.get(1).printStackTrace(new PrintWriter(sw));
-            sb.append(sw.toString().replace("\n", "\n\t").trim());
+            renderer.append(EXCEPTION_SEPARATOR);
+            renderer.append("\t2nd error: ").appendStackTrace(errors.get(1));
+        }
+        renderer.append(EXCEPTION_SEPARATOR);
+        renderer.append("\tlast error: ").appendStackTrace(lastError);
+        renderer.append(EXCEPTION_SEPARATOR);
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    void sleep(long nanos) {
+        try {
+            // Note: If the current thread is a worker thread of a fork join pool,
+            // the pool may start another worker thread meanwhile ...
+            ManagedBlocking.sleep(nanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Got interrupted.", e);
         }
-        sb.append(EXCEPTION_SEPARATOR);
-        sb.append("\tlast error: ");
-        sw = new StringWriter();
-        lastError.printStackTrace(new PrintWriter(sw));
-        sb.append(sw.toString().replace("\n", "\n\t").trim());
-        sb.append(EXCEPTION_SEPARATOR);
     }
 
     /**
      * Internal method, package private for testing.
      */
-    void sleep(long millis) {
+    void awaitWakeup(WakeupSignal signal, long generation, long nanos) {
+        if (nanos <= 0 || signal.getGeneration() != generation) {
+            return;
+        }
         try {
-            Thread.sleep(millis);
+            ManagedBlocking.call(() -> {
+                signal.await(generation, nanos);
+                return null;
+            });
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Got interrupted.", e);
+        } catch (Exception e) {
+            // Can not happen, because WakeupSignal.await throws no other checked exception ...
+            throw new RuntimeException(e);
         }
     }
 }
@@ -0,0 +1,320 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Records how often and how long each call site of {@link PollingWait} waited,
+ * so that you can find the waits, which dominate the duration of your test suite,
+ * and tune their {@link PollingWait#pollStrategy poll strategies}.
+ * If you specify a file using the system property <code>pollingWaitStatisticsFile</code>,
+ * each call of {@link PollingWait#until until(...)} (or one of its variants) is recorded,
+ * and the statistics are written to this file, when the JVM shuts down -- as CSV if the
+ * file name ends with <code>.csv</code>, otherwise as JSON. The call site is the
+ * first stack frame outside of <code>PollingWait</code>, e.g.
+ * <code>com.example.LoginTest.test_login(LoginTest.java:42)</code>.
+ * For each call site the following values are written (sorted by <code>totalTimeMicros</code>,
+ * longest first):<ul>
+ *     <li><code>calls</code> -- how often <code>PollingWait</code> was called,</li>
+ *     <li><code>timeouts</code> -- how many of these calls timed out,</li>
+ *     <li><code>polls</code> -- how often the <code>RunnableAssert</code>s were executed,</li>
+ *     <li><code>totalTimeMicros</code> -- the total duration of all calls,</li>
+ *     <li><code>maxTimeToSuccessMicros</code> -- the longest duration of a successful call,</li>
+ *     <li><code>waitTimeMicros</code> -- the time spent between the polls (sleeping).</li>
+ * </ul>
+ * If the file already exists (e.g. because several JVMs forked by surefire use the same file),
+ * the recorded statistics are merged with the statistics contained in the file, the file is
+ * locked while doing so.
+ * Recording is lock-free, if the system property is not set, nothing is recorded.
+ *
+ * @since 2.6
+ */
+public class PollingWaitStatistics {
+
+    private static final PollingWaitStatistics INSTANCE = setUpPollingWaitStatistics();
+
+    /**
+     * A <code>FileLock</code> is held on behalf of the whole JVM, so two
+     * <code>PollingWaitStatistics</code> must not try to lock the same file concurrently.
+     */
+    private static final Object FILE_LOCK_MONITOR = new Object();
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private static PollingWaitStatistics setUpPollingWaitStatistics() {
+        String fileName = System.getProperty("pollingWaitStatisticsFile");
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return new PollingWaitStatistics(null);
+        }
+        PollingWaitStatistics statistics = new PollingWaitStatistics(new File(fileName.trim()));
+        Runtime.getRuntime().addShutdownHook(new Thread("PollingWaitStatistics-write") {
+            @Override
+            public void run() {
+                statistics.write();
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics configured via the system property
+     * <code>pollingWaitStatisticsFile</code> -- if this system property
+     * is not set, empty statistics are returned, which do not record anything.
+     */
+    public static PollingWaitStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    private static class CallSite {
+        final LongAdder calls = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder polls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanosToSuccess = new LongAccumulator(Math::max, 0);
+        final LongAdder waitNanos = new LongAdder();
+
+        void add(long calls, long timeouts, long polls, long totalNanos, long maxNanosToSuccess, long waitNanos) {
+            this.calls.add(calls);
+            this.timeouts.add(timeouts);
+            this.polls.add(polls);
+            this.totalNanos.add(totalNanos);
+            this.maxNanosToSuccess.accumulate(maxNanosToSuccess);
+            this.waitNanos.add(waitNanos);
+        }
+    }
+
+    private final File file;
+    private final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+
+    /**
+     * Internal constructor, package private for testing.
+     */
+    PollingWaitStatistics(@Nullable File file) {
+        this.file = file;
+    }
+
+    boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Records one call of {@link PollingWait}.
+     * This method is lock-free and can be called concurrently.
+     *
+     * @param totalNanos the time between the start of the first poll and the end of the last poll
+     * @param waitNanos the time spent between the polls
+     */
+    void record(@Nonnull String callSite, int polls, long totalNanos, long waitNanos, boolean timedOut) {
+        CallSite c = callSites.computeIfAbsent(callSite, key -> new CallSite());
+        c.calls.increment();
+        c.polls.add(polls);
+        c.totalNanos.add(totalNanos);
+        c.waitNanos.add(waitNanos);
+        if (timedOut) {
+            c.timeouts.increment();
+        } else {
+            c.maxNanosToSuccess.accumulate(totalNanos);
+        }
+    }
+
+    /**
+     * Returns the recorded statistics as CSV, one line per call site.
+     */
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder("callSite,calls,timeouts,polls,totalTimeMicros,maxTimeToSuccessMicros,waitTimeMicros\n");
+        for (Map.Entry<String, CallSite> entry : getSortedCallSites()) {
+            CallSite c = entry.getValue();
+            sb.append('"').append(entry.getKey().replace("\"", "\"\"")).append('"');
+            sb.append(',').append(c.calls.sum());
+            sb.append(',').append(c.timeouts.sum());
+            sb.append(',').append(c.polls.sum());
+            sb.append(',').append(toMicros(c.totalNanos.sum()));
+            sb.append(',').append(toMicros(c.maxNanosToSuccess.get()));
+            sb.append(',').append(toMicros(c.waitNanos.sum()));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the recorded statistics as JSON array, one object per call site.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("[");
+        String separator = "\n";
+        for (Map.Entry<String, CallSite> entry : getSortedCallSites()) {
+            CallSite c = entry.getValue();
+            sb.append(separator).append("  {\"callSite\": ");
+            appendJsonString(sb, entry.getKey());
+            sb.append(", \"calls\": ").append(c.calls.sum());
+            sb.append(", \"timeouts\": ").append(c.timeouts.sum());
+            sb.append(", \"polls\": ").append(c.polls.sum());
+            sb.append(", \"totalTimeMicros\": ").append(toMicros(c.totalNanos.sum()));
+            sb.append(", \"maxTimeToSuccessMicros\": ").append(toMicros(c.maxNanosToSuccess.get()));
+            sb.append(", \"waitTimeMicros\": ").append(toMicros(c.waitNanos.sum()));
+            sb.append('}');
+            separator = ",\n";
+        }
+        sb.append("\n]\n");
+        return sb.toString();
+    }
+
+    private List<Map.Entry<String, CallSite>> getSortedCallSites() {
+        List<Map.Entry<String, CallSite>> entries = new ArrayList<>(callSites.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, CallSite> entry) -> entry.getValue().totalNanos.sum()).reversed()
+                               .thenComparing(Map.Entry::getKey));
+        return entries;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Adds the statistics contained in the given content of a file written by
+     * {@link #write()}, lines which cannot be parsed are ignored.
+     */
+    void merge(@Nonnull String content, boolean csv) {
+        String prefix = (csv ? "\"" : "  {\"callSite\": \"");
+        for (String line : content.split("\n")) {
+            if (!line.startsWith(prefix)) {
+                continue;
+            }
+            StringBuilder callSite = new StringBuilder();
+            int end = parseString(line, prefix.length(), csv, callSite);
+            if (end < 0) {
+                continue;
+            }
+            List<Long> values = new ArrayList<>();
+            Matcher matcher = NUMBER.matcher(line).region(end, line.length());
+            try {
+                while (matcher.find()) {
+                    values.add(Long.parseLong(matcher.group()));
+                }
+            } catch (NumberFormatException ignored) {
+                continue;
+            }
+            if (values.size() == 6) {
+                CallSite c = callSites.computeIfAbsent(callSite.toString(), key -> new CallSite());
+                c.add(values.get(0), values.get(1), values.get(2), toNanos(values.get(3)), toNanos(values.get(4)), toNanos(values.get(5)));
+            }
+        }
+    }
+
+    /**
+     * Appends the CSV (or JSON) string starting at the given index of the given line
+     * (after the opening quote) to the given <code>StringBuilder</code> and returns the
+     * index after the closing quote or <code>-1</code> if the string is not terminated.
+     */
+    private static int parseString(String line, int start, boolean csv, StringBuilder sb) {
+        for (int i = start; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (csv && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    ++i;
+                } else {
+                    return i + 1;
+                }
+            } else if (c == '\\' && !csv && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                if (next == 'u' && i + 4 < line.length()) {
+                    try {
+                        sb.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                    i += 4;
+                } else {
+                    sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return -1;
+    }
+
+    private static long toNanos(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    /**
+     * Writes the recorded statistics to the file specified by the
+     * system property <code>pollingWaitStatisticsFile</code>,
+     * merged with the statistics already contained in this file.
+     * Must only be called once, when the recording is finished.
+     */
+    synchronized void write() {
+        if (file == null || callSites.isEmpty()) {
+            return;
+        }
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                Files.createDirectories(dir.toPath());
+            }
+            boolean csv = file.getName().endsWith(".csv");
+            synchronized (FILE_LOCK_MONITOR) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE)) {
+                    // Note: The lock is released, when the channel is closed ...
+                    channel.lock();
+                    PollingWaitStatistics merged = new PollingWaitStatistics(file);
+                    merged.merge(new String(readFully(channel), StandardCharsets.UTF_8), csv);
+                    for (Map.Entry<String, CallSite> entry : callSites.entrySet()) {
+                        CallSite c = entry.getValue();
+                        merged.callSites.computeIfAbsent(entry.getKey(), key -> new CallSite()).add(
+                            c.calls.sum(), c.timeouts.sum(), c.polls.sum(), c.totalNanos.sum(), c.maxNanosToSuccess.get(), c.waitNanos.sum()
+                        );
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap((csv ? merged.toCsv() : merged.toJson()).getBytes(StandardCharsets.UTF_8));
+                    channel.position(0);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.truncate(buffer.limit());
+                }
+            }
+        } catch (IOException ignored) {
+            // The statistics are for diagnostics only, a failure to write them must not fail the test run
+        }
+    }
+
+    private static byte[] readFully(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Continue reading ...
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
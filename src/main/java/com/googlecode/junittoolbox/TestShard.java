@@ -0,0 +1,137 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.runners.model.InitializationError;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Splits the children classes of a {@link WildcardPatternSuite}
+ * (or {@link ParallelSuite}) into balanced shards, so that you
+ * can distribute your tests to several JVMs or CI nodes.
+ * The shard to execute is specified with the system property
+ * <code>testShard</code>, e.g. <code>-DtestShard=3/12</code>
+ * will execute the 3rd of 12 shards.
+ * <p>The shards are balanced using the durations recorded in the
+ * {@link TimingHistory} (longest first, each class is assigned to
+ * the shard with the smallest total duration so far). If no durations
+ * are known, the classes are distributed round robin by their name.
+ * Note: All nodes must use the same timing history file (or none at all),
+ * otherwise the shards might overlap or leave gaps.
+ */
+class TestShard {
+
+    /**
+     * Returns the <code>TestShard</code> specified with the system property
+     * <code>testShard</code> or <code>null</code> if this system property is not set.
+     */
+    @Nullable
+    static TestShard fromSystemProperty() throws InitializationError {
+        String testShard = System.getProperty("testShard");
+        if (testShard == null || testShard.trim().isEmpty()) {
+            return null;
+        }
+        return parse(testShard.trim());
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    static TestShard parse(String s) throws InitializationError {
+        int i = s.indexOf('/');
+        try {
+            int index = Integer.parseInt(s.substring(0, i).trim());
+            int total = Integer.parseInt(s.substring(i + 1).trim());
+            if (total >= 1 && index >= 1 && index <= total) {
+                return new TestShard(index, total);
+            }
+        } catch (RuntimeException ignored) {}
+        throw new InitializationError("Invalid test shard \"" + s + "\" -- must be \"<index>/<total>\" with 1 <= index <= total");
+    }
+
+    private final int index;
+    private final int total;
+
+    private TestShard(int index, int total) {
+        this.index = index;
+        this.total = total;
+    }
+
+    /**
+     * Returns the names of the given classes, which belong to this shard.
+     */
+    Set<String> select(@Nonnull Collection<String> classNames, @Nonnull TimingHistory timingHistory) {
+        List<String> sortedClassNames = new ArrayList<>(new TreeSet<>(classNames));
+        Map<String, Long> durations = getDurations(sortedClassNames, timingHistory);
+        Set<String> result = new HashSet<>();
+        if (durations.isEmpty()) {
+            for (int i = index - 1; i < sortedClassNames.size(); i += total) {
+                result.add(sortedClassNames.get(i));
+            }
+            return result;
+        }
+        long averageDuration = 0;
+        for (long duration : durations.values()) {
+            averageDuration += duration / durations.size();
+        }
+        long expectedDurationOfUnknownClasses = averageDuration;
+        // Note: List.sort is stable, therefore classes with the same duration stay sorted by name ...
+        sortedClassNames.sort((className1, className2) -> Long.compare(
+            durations.getOrDefault(className2, expectedDurationOfUnknownClasses),
+            durations.getOrDefault(className1, expectedDurationOfUnknownClasses)
+        ));
+        long[] totalDurations = new long[total];
+        for (String className : sortedClassNames) {
+            int shard = 0;
+            for (int i = 1; i < total; ++i) {
+                if (totalDurations[i] < totalDurations[shard]) {
+                    shard = i;
+                }
+            }
+            totalDurations[shard] += durations.getOrDefault(className, expectedDurationOfUnknownClasses);
+            if (shard == index - 1) {
+                result.add(className);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the recorded duration of each of the given classes -- if only
+     * the durations of the test methods of a class are known, their sum is used.
+     */
+    private static Map<String, Long> getDurations(List<String> classNames, TimingHistory timingHistory) {
+        Map<String, Long> durations = new HashMap<>();
+        if (timingHistory.isEmpty()) {
+            return durations;
+        }
+        Set<String> remainingClassNames = new HashSet<>();
+        for (String className : classNames) {
+            long duration = timingHistory.getDurationInNanos(className);
+            if (duration >= 0) {
+                durations.put(className, duration);
+            } else {
+                remainingClassNames.add(className);
+            }
+        }
+        if (!remainingClassNames.isEmpty()) {
+            for (String key : timingHistory.getKeys()) {
+                // The key of a test method is "<methodName>(<className>)" ...
+                int i = key.lastIndexOf('(');
+                if (i > 0 && key.endsWith(")")) {
+                    String className = key.substring(i + 1, key.length() - 1);
+                    if (remainingClassNames.contains(className)) {
+                        durations.merge(className, timingHistory.getDurationInNanos(key), Long::sum);
+                    }
+                }
+            }
+        }
+        return durations;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + total;
+    }
+}
@@ -0,0 +1,372 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.runner.Description;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Remembers how long test classes and test methods took in previous runs.
+ * {@link ParallelSuite}, {@link ParallelRunner}, and {@link ParallelParameterized}
+ * record the duration of each of their children, if you specify a file
+ * using the system property <code>testTimingHistoryFile</code>, and use the
+ * recorded durations to start the longest running children first.
+ * <p>The file is append-only: Each run appends one record per executed child,
+ * recording a duration never blocks the worker threads, because the records
+ * are collected in a lock-free queue and appended in a single write, when
+ * the outermost parallel runner has finished (or the JVM shuts down).
+ * The file is locked while it is read, appended to, or compacted, so that
+ * several JVMs (e.g. forked by surefire) can share the same file.
+ * For each test only the last {@value #MAX_SAMPLES_PER_KEY} durations are kept,
+ * from which the moving average and percentiles are calculated.
+ * Example:<pre>
+ *     TimingHistory timingHistory = TimingHistory.read(new File("target/test-timings.bin"));
+ *     for (String key : timingHistory.getKeys()) {
+ *         System.out.println(key + ": p90 = " + timingHistory.getPercentileInNanos(key, 90) + " ns");
+ *     }
+ * </pre>
+ *
+ * @since 2.6
+ */
+public class TimingHistory {
+
+    /**
+     * The maximum number of durations kept for each test.
+     */
+    public static final int MAX_SAMPLES_PER_KEY = 20;
+
+    private static final int MAGIC = 0x4A544832; // "JTH2"
+
+    private static final TimingHistory INSTANCE = setUpTimingHistory();
+
+    /**
+     * A <code>FileLock</code> is held on behalf of the whole JVM, so two
+     * <code>TimingHistory</code> instances must not try to lock the same file concurrently.
+     */
+    private static final Object FILE_LOCK_MONITOR = new Object();
+
+    private static TimingHistory setUpTimingHistory() {
+        String fileName = System.getProperty("testTimingHistoryFile");
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return new TimingHistory(null);
+        }
+        TimingHistory timingHistory = new TimingHistory(new File(fileName.trim()));
+        timingHistory.load();
+        Runtime.getRuntime().addShutdownHook(new Thread("TimingHistory-flush") {
+            @Override
+            public void run() {
+                timingHistory.flush();
+            }
+        });
+        return timingHistory;
+    }
+
+    /**
+     * Returns the timing history configured via the system property
+     * <code>testTimingHistoryFile</code> -- if this system property
+     * is not set, an empty timing history is returned, which does not
+     * record anything.
+     */
+    public static TimingHistory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads the given timing history file, e.g. to analyze
+     * the recorded durations in your CI pipeline.
+     */
+    public static TimingHistory read(@Nonnull File file) {
+        TimingHistory timingHistory = new TimingHistory(file);
+        timingHistory.load();
+        return timingHistory;
+    }
+
+    /**
+     * Returns the key under which the duration of the given <code>child</code>
+     * of the test (or test suite) with the given <code>parentName</code> is stored:
+     * The display name of the <code>child</code>, which is the class name for test classes
+     * and <code><i>methodName</i>(<i>className</i>)</code> for test methods. If the child
+     * is not associated with a test class (like the children of {@link ParallelParameterized}),
+     * its display name is prefixed with the <code>parentName</code> and a <code>'/'</code>.
+     */
+    static String keyOf(@Nonnull String parentName, @Nonnull Description child) {
+        if (child.getTestClass() == null) {
+            return parentName + "/" + child.getDisplayName();
+        }
+        return child.getDisplayName();
+    }
+
+    private static class Record {
+        final String key;
+        final long timestamp;
+        final long durationInNanos;
+
+        Record(String key, long timestamp, long durationInNanos) {
+            this.key = key;
+            this.timestamp = timestamp;
+            this.durationInNanos = durationInNanos;
+        }
+    }
+
+    private final File file;
+    /** The last {@link #MAX_SAMPLES_PER_KEY} durations for each key, oldest first, arrays are never modified. */
+    private final Map<String, long[]> samples = new ConcurrentHashMap<>();
+    private final Queue<Record> unflushedRecords = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Internal constructor, package private for testing.
+     */
+    TimingHistory(@Nullable File file) {
+        this.file = file;
+    }
+
+    boolean isEnabled() {
+        return file != null;
+    }
+
+    boolean isEmpty() {
+        return samples.isEmpty();
+    }
+
+    /**
+     * Returns the keys of all tests (and test classes) with recorded
+     * durations, see {@link #getMovingAverageInNanos(String)}.
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(new TreeSet<>(samples.keySet()));
+    }
+
+    /**
+     * Returns how many durations are known for the given key.
+     */
+    public int getNumSamples(@Nonnull String key) {
+        long[] a = samples.get(key);
+        return (a == null ? 0 : a.length);
+    }
+
+    /**
+     * Returns the average of the last {@value #MAX_SAMPLES_PER_KEY} durations
+     * recorded for the given key in nanoseconds or <code>-1</code>
+     * if no duration has been recorded yet.
+     */
+    public long getMovingAverageInNanos(@Nonnull String key) {
+        long[] a = samples.get(key);
+        if (a == null) {
+            return -1;
+        }
+        long sum = 0;
+        for (long x : a) {
+            sum += x;
+        }
+        return sum / a.length;
+    }
+
+    /**
+     * Returns the given percentile (a value between 0 and 100) of the last
+     * {@value #MAX_SAMPLES_PER_KEY} durations recorded for the given key
+     * in nanoseconds or <code>-1</code> if no duration has been recorded yet.
+     */
+    public long getPercentileInNanos(@Nonnull String key, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile + " -- must be between 0 and 100");
+        }
+        long[] a = samples.get(key);
+        if (a == null) {
+            return -1;
+        }
+        long[] sorted = a.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Returns the expected duration of the test (or test class) with the given key
+     * in nanoseconds or <code>-1</code> if the duration is unknown.
+     */
+    long getDurationInNanos(@Nonnull String key) {
+        return getMovingAverageInNanos(key);
+    }
+
+    /**
+     * Records the given duration, which will be appended to the
+     * timing history file by the next call of {@link #flush()}.
+     * This method is lock-free and can be called concurrently.
+     */
+    void record(@Nonnull String key, long durationInNanos) {
+        if (isEnabled()) {
+            unflushedRecords.add(new Record(key, System.currentTimeMillis(), durationInNanos));
+        }
+    }
+
+    /**
+     * Appends all recorded durations to the timing history file.
+     */
+    synchronized void flush() {
+        if (file == null || unflushedRecords.isEmpty()) {
+            return;
+        }
+        List<Record> records = new ArrayList<>();
+        for (Record record; (record = unflushedRecords.poll()) != null;) {
+            records.add(record);
+            addSample(record.key, record.durationInNanos);
+        }
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                Files.createDirectories(dir.toPath());
+            }
+            synchronized (FILE_LOCK_MONITOR) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, APPEND)) {
+                    // Note: The lock is released, when the channel is closed ...
+                    channel.lock();
+                    // Note: The header is only written by the JVM, which holds the lock
+                    // while the file is empty, so that it is never written twice ...
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(buffer);
+                    if (channel.size() == 0) {
+                        out.writeInt(MAGIC);
+                    }
+                    for (Record record : records) {
+                        writeRecord(out, record);
+                    }
+                    writeFully(channel, buffer.toByteArray());
+                }
+            }
+        } catch (IOException ignored) {
+            // The timing history is an optimization only, a failure to write it must not fail the test run
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeUTF(record.key);
+        out.writeLong(record.timestamp);
+        out.writeLong(record.durationInNanos);
+    }
+
+    private void addSample(String key, long durationInNanos) {
+        long[] a = samples.get(key);
+        long[] b;
+        if (a == null) {
+            b = new long[] { durationInNanos };
+        } else if (a.length < MAX_SAMPLES_PER_KEY) {
+            b = Arrays.copyOf(a, a.length + 1);
+            b[a.length] = durationInNanos;
+        } else {
+            b = new long[MAX_SAMPLES_PER_KEY];
+            System.arraycopy(a, 1, b, 0, MAX_SAMPLES_PER_KEY - 1);
+            b[MAX_SAMPLES_PER_KEY - 1] = durationInNanos;
+        }
+        samples.put(key, b);
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    synchronized void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        synchronized (FILE_LOCK_MONITOR) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ, WRITE)) {
+                // Note: The lock is released, when the channel is closed ...
+                channel.lock();
+                // Note: The file is compacted while the lock is held (and in place,
+                // instead of replacing it with another file), so that no records
+                // appended by other JVMs in the meantime are lost ...
+                Map<String, Long> lastTimestamps = new HashMap<>();
+                if (!load(readFully(channel), lastTimestamps)) {
+                    compact(channel, lastTimestamps);
+                }
+            } catch (IOException e) {
+                // The file is not writable (or locking is not supported) --
+                // read it without lock, but do not compact it ...
+                try {
+                    load(Files.readAllBytes(file.toPath()), new HashMap<>());
+                } catch (IOException ignored) {
+                    // The timing history only affects the execution order ...
+                }
+            }
+        }
+    }
+
+    private static byte[] readFully(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Continue reading ...
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Adds the samples contained in the given file content and returns
+     * <code>true</code> if the content is valid and does not contain
+     * considerably more records than needed, i.e. if no compaction is needed.
+     */
+    private boolean load(byte[] content, Map<String, Long> lastTimestamps) {
+        int numRecords = 0;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(content))) {
+            if (in.readInt() != MAGIC) {
+                // Unknown file format, will be replaced ...
+                return false;
+            }
+            for (;;) {
+                String key;
+                try {
+                    key = in.readUTF();
+                } catch (EOFException endOfFile) {
+                    break;
+                }
+                long timestamp = in.readLong();
+                addSample(key, in.readLong());
+                lastTimestamps.put(key, timestamp);
+                ++numRecords;
+            }
+        } catch (IOException e) {
+            // A corrupt (or truncated) timing history only affects the execution
+            // order, therefore we simply keep what we could read so far ...
+            return false;
+        }
+        return numRecords <= 2 * MAX_SAMPLES_PER_KEY * Math.max(1, samples.size());
+    }
+
+    /**
+     * Rewrites the locked timing history file so that it only contains
+     * the last {@value #MAX_SAMPLES_PER_KEY} records for each key.
+     */
+    private void compact(FileChannel channel, Map<String, Long> lastTimestamps) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(MAGIC);
+            for (Map.Entry<String, long[]> entry : samples.entrySet()) {
+                Long timestamp = lastTimestamps.get(entry.getKey());
+                for (long durationInNanos : entry.getValue()) {
+                    writeRecord(out, new Record(entry.getKey(), (timestamp == null ? 0 : timestamp), durationInNanos));
+                }
+            }
+            byte[] bytes = buffer.toByteArray();
+            channel.position(0);
+            writeFully(channel, bytes);
+            channel.truncate(bytes.length);
+        } catch (IOException ignored) {
+            // Compaction is an optimization only ...
+        }
+    }
+}
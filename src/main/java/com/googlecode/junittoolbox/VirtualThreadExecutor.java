@@ -0,0 +1,111 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executes each task in a new virtual thread (requires Java 21 or later), used by
+ * {@link ParallelScheduler} if {@link ParallelismConfig#virtualThreads()} is specified.
+ * The number of concurrently running tasks can be limited: Each task holds
+ * a permit of a {@link Semaphore} while it is running, but releases
+ * it while it is waiting for its children (see {@link #join}), so that
+ * nested parallel runners can not starve each other.
+ */
+class VirtualThreadExecutor {
+
+    private static final ThreadLocal<VirtualThreadExecutor> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Returns a new <code>VirtualThreadExecutor</code> or <code>null</code>
+     * if virtual threads are not supported by the JVM.
+     *
+     * @param maxConcurrency the maximum number of concurrently running tasks, <code>0</code> means unlimited
+     */
+    @Nullable
+    static VirtualThreadExecutor create(@Nonnull String threadNamePrefix, int maxConcurrency) {
+        ThreadFactory threadFactory = createVirtualThreadFactory(threadNamePrefix);
+        return threadFactory == null ? null : new VirtualThreadExecutor(threadFactory, maxConcurrency);
+    }
+
+    /**
+     * Returns a {@link ThreadFactory} for virtual threads, whose names start with the given prefix,
+     * or <code>null</code> if virtual threads are not supported by the JVM.
+     */
+    @Nullable
+    static ThreadFactory createVirtualThreadFactory(@Nonnull String threadNamePrefix) {
+        try {
+            // Thread.ofVirtual().name(threadNamePrefix, 1).factory() -- called via reflection to stay compatible with Java 8 ...
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 1L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the <code>VirtualThreadExecutor</code>, which executes the task
+     * running in the current thread, or <code>null</code> if there is none.
+     */
+    @Nullable
+    static VirtualThreadExecutor current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Waits until the given task is done -- if the current thread is executing a
+     * task of a <code>VirtualThreadExecutor</code>, its permit is released meanwhile.
+     */
+    static void join(@Nonnull ForkJoinTask<?> task) {
+        VirtualThreadExecutor executor = CURRENT.get();
+        if (executor != null && executor._semaphore != null && !task.isDone()) {
+            executor._semaphore.release();
+            try {
+                task.quietlyJoin();
+            } finally {
+                executor._semaphore.acquireUninterruptibly();
+            }
+        }
+        task.join();
+    }
+
+    private final ThreadFactory _threadFactory;
+    private final Semaphore _semaphore;
+    private final int _maxConcurrency;
+
+    private VirtualThreadExecutor(ThreadFactory threadFactory, int maxConcurrency) {
+        _threadFactory = threadFactory;
+        _semaphore = (maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null);
+        _maxConcurrency = maxConcurrency;
+    }
+
+    int getMaxConcurrency() {
+        return _maxConcurrency;
+    }
+
+    /**
+     * Executes the given task in a new virtual thread, exceptions
+     * are rethrown, when {@link #join joining} the task.
+     */
+    void execute(@Nonnull ForkJoinTask<?> task) {
+        _threadFactory.newThread(() -> {
+            CURRENT.set(this);
+            if (_semaphore != null) {
+                _semaphore.acquireUninterruptibly();
+            }
+            try {
+                task.quietlyInvoke();
+            } finally {
+                if (_semaphore != null) {
+                    _semaphore.release();
+                }
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,53 @@
+package com.googlecode.junittoolbox;
+
+import java.lang.annotation.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This annotation can be used with the {@link ParallelSuite},
+ * the {@link ParallelRunner}, and the {@link ParallelParameterized} runner
+ * to limit the time, which all {@link PollingWait}s of the annotated class
+ * (and of all its children) may wait together, so that a test run against
+ * a broken environment (e.g. a backend, which is down) fails within minutes,
+ * instead of letting each test wait for the full timeout of its <code>PollingWait</code>.
+ * Example:<pre>
+ *     &#64;RunWith(ParallelSuite.class)
+ *     &#64;SuiteClasses("&#42;&#42;/&#42;IntegrationTest.class")
+ *     &#64;WaitBudget(time = 10, unit = MINUTES, failFastAfterTimeouts = 3)
+ *     public class AllIntegrationTests {}
+ * </pre>
+ * <ul>
+ *     <li>If <code>time</code> is specified, a deadline is set, when the annotated
+ *     class starts executing its children, after this deadline each
+ *     <code>PollingWait</code> fails as soon as its condition is not fulfilled.
+ *     A nested class can only shorten the deadline of its enclosing class.</li>
+ *     <li>If <code>failFastAfterTimeouts</code> is specified, a circuit breaker is
+ *     used: After the given number of consecutive timeouts of <code>PollingWait</code>s
+ *     called at the same call site (the same line of code), later <code>PollingWait</code>s
+ *     at this call site fail after their first attempt, until one of them succeeds again.</li>
+ * </ul>
+ *
+ * @since 2.6
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface WaitBudget {
+    /**
+     * The time, which all <code>PollingWait</code>s of the annotated class may wait
+     * together, if not specified (or <code>0</code>), there is no deadline.
+     */
+    long time() default 0;
+
+    /**
+     * The time unit of <code>time</code>, default is {@link TimeUnit#SECONDS}.
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * The number of consecutive timeouts at the same call site, after which
+     * <code>PollingWait</code>s at this call site fail fast, if not specified
+     * (or <code>0</code>), <code>PollingWait</code>s never fail fast.
+     */
+    int failFastAfterTimeouts() default 0;
+}
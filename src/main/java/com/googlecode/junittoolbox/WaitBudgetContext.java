@@ -0,0 +1,137 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The deadline and the circuit breaker configured with {@link WaitBudget @WaitBudget}
+ * for the currently executed test. The parallel runners (see {@link ParallelScheduler})
+ * make the context of the annotated class available to all threads executing
+ * its children, and {@link PollingWait} respects it.
+ */
+class WaitBudgetContext {
+
+    private static final ThreadLocal<WaitBudgetContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Returns the context of the test executed by the current thread,
+     * or <code>null</code> if there is none.
+     */
+    @Nullable
+    static WaitBudgetContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns a <code>Runnable</code>, which executes the given <code>runnable</code>
+     * with the given context as {@link #current() current context}.
+     */
+    static Runnable wrap(@Nullable WaitBudgetContext context, @Nonnull Runnable runnable) {
+        if (context == null) {
+            return runnable;
+        }
+        return () -> {
+            WaitBudgetContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                runnable.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    private final String _className;
+    /** The name of the class, whose <code>@WaitBudget</code> determines the deadline, or <code>null</code>. */
+    private final String _deadlineClassName;
+    private final long _deadline;
+    private final int _failFastAfterTimeouts;
+    /** The context with the circuit breaker, either this or one of the enclosing contexts or <code>null</code>. */
+    private final WaitBudgetContext _circuitBreaker;
+    private final Map<String, AtomicInteger> _consecutiveTimeouts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the context of the given class annotated with the given <code>@WaitBudget</code>,
+     * its deadline starts now.
+     */
+    WaitBudgetContext(@Nonnull Class<?> klass, @Nonnull WaitBudget waitBudget, @Nullable WaitBudgetContext parent) {
+        String deadlineClassName = null;
+        long deadline = 0;
+        if (waitBudget.time() > 0) {
+            deadlineClassName = klass.getName();
+            deadline = System.nanoTime() + waitBudget.unit().toNanos(waitBudget.time());
+        }
+        if (parent != null && parent._deadlineClassName != null && (deadlineClassName == null || parent._deadline - deadline < 0)) {
+            deadlineClassName = parent._deadlineClassName;
+            deadline = parent._deadline;
+        }
+        _className = klass.getName();
+        _deadlineClassName = deadlineClassName;
+        _deadline = deadline;
+        _failFastAfterTimeouts = waitBudget.failFastAfterTimeouts();
+        _circuitBreaker = (_failFastAfterTimeouts > 0 ? this : parent == null ? null : parent._circuitBreaker);
+    }
+
+    boolean hasDeadline() {
+        return _deadlineClassName != null;
+    }
+
+    /**
+     * Returns the deadline (a value of <code>System.nanoTime()</code>),
+     * only valid if {@link #hasDeadline()} returns <code>true</code>.
+     */
+    long getDeadline() {
+        return _deadline;
+    }
+
+    boolean hasCircuitBreaker() {
+        return _circuitBreaker != null;
+    }
+
+    /**
+     * Returns <code>true</code> if the <code>PollingWait</code>s at the given
+     * call site timed out too often and should fail fast.
+     */
+    boolean isCircuitOpen(@Nonnull String callSite) {
+        if (_circuitBreaker == null) {
+            return false;
+        }
+        AtomicInteger timeouts = _circuitBreaker._consecutiveTimeouts.get(callSite);
+        return timeouts != null && timeouts.get() >= _circuitBreaker._failFastAfterTimeouts;
+    }
+
+    void recordTimeout(@Nonnull String callSite) {
+        if (_circuitBreaker != null) {
+            _circuitBreaker._consecutiveTimeouts.computeIfAbsent(callSite, key -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    void recordSuccess(@Nonnull String callSite) {
+        if (_circuitBreaker != null) {
+            _circuitBreaker._consecutiveTimeouts.remove(callSite);
+        }
+    }
+
+    /**
+     * Returns a description of the <code>@WaitBudget</code>
+     * annotation, which configured the circuit breaker.
+     */
+    String describeCircuitBreaker() {
+        return "@WaitBudget(failFastAfterTimeouts = " + _circuitBreaker._failFastAfterTimeouts + ") on class " + _circuitBreaker._className;
+    }
+
+    /**
+     * Returns a description of the <code>@WaitBudget</code>
+     * annotation, which configured the deadline.
+     */
+    String describeDeadline() {
+        return "@WaitBudget on class " + _deadlineClassName;
+    }
+}
@@ -0,0 +1,88 @@
+package com.googlecode.junittoolbox;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes up {@link PollingWait}s, which are waiting for the next attempt, so that they
+ * re-evaluate their condition immediately, when the state they depend on has changed.
+ * Usage example:<pre>
+ *     private WakeupSignal messageReceived = new WakeupSignal();
+ *     private PollingWait wait = new PollingWait().timeoutAfter(5, SECONDS)
+ *                                                 .wakeUpOn(messageReceived);
+ *     &#64;Test
+ *     public void test_message_is_received() throws Exception {
+ *         queue.addListener(message -&gt; messageReceived.signal());
+ *         sendMessage("foo");
+ *         wait.until(() -&gt; receivedMessages.contains("foo"));
+ *     }
+ * </pre>
+ * The <code>PollingWait</code> still polls with its {@link PollingWait#pollEvery interval}
+ * (or {@link PollingWait#pollStrategy poll strategy}), so that a missing signal only
+ * makes it slower. Each call of {@link #signal()} increments a generation counter,
+ * if a signal arrives while a <code>PollingWait</code> evaluates its condition,
+ * the next attempt starts immediately, so that no signal is lost.
+ *
+ * @since 2.6
+ */
+public class WakeupSignal {
+
+    private volatile long _generation;
+    private final Set<Runnable> _listeners = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Wakes up all {@link PollingWait}s waiting for this signal.
+     */
+    public void signal() {
+        synchronized (this) {
+            ++_generation;
+            notifyAll();
+        }
+        for (Runnable listener : _listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Registers the given listener, which is called by each call of {@link #signal()}
+     * (in the signaling thread), used by {@link PollingWait}.
+     */
+    void addListener(@Nonnull Runnable listener) {
+        _listeners.add(listener);
+    }
+
+    void removeListener(@Nonnull Runnable listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    boolean hasListeners() {
+        return !_listeners.isEmpty();
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * Waits up to the given time, until {@link #signal()} is called -- returns
+     * immediately, if the current generation differs from the given one.
+     */
+    void await(long generation, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        synchronized (this) {
+            long remainingNanos = nanos;
+            while (_generation == generation && remainingNanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                remainingNanos = deadline - System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.runners.model.InitializationError;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Matches all include and exclude wildcard patterns of a {@link WildcardPatternSuite}
+ * in a single pass over a {@link ClassFileIndex}. Directories which can not contain
+ * any matching class file are not visited at all, e.g. for the pattern
+ * <code>"frontend/&#42;&#42;/&#42;Test.class"</code> the directory <code>backend</code>
+ * is skipped, and for the exclude pattern <code>"!gui/&#42;&#42;"</code>
+ * the directory <code>gui</code> is skipped.
+ */
+class WildcardPatternMatcher implements ClassFileIndex.Visitor {
+
+    private static class CompiledPattern {
+        /** The path of the base directory relative to the classes directory (ending with '/'), or <code>""</code> */
+        final String stripPrefix;
+        /** The path of the classes directory relative to the base directory (ending with '/'), or <code>""</code> */
+        final String addPrefix;
+        final Pattern regex;
+        /** The segment patterns of the wildcard pattern or <code>null</code> if directories can not be pruned */
+        final Pattern[] segments;
+
+        CompiledPattern(String stripPrefix, String addPrefix, String wildcardPattern) throws InitializationError {
+            this.stripPrefix = stripPrefix;
+            this.addPrefix = addPrefix;
+            regex = convertWildcardPatternToRegex("/" + wildcardPattern);
+            if (wildcardPattern.contains("?")) {
+                // '?' might match a '/' character, therefore directories are never pruned ...
+                segments = null;
+            } else {
+                String[] s = wildcardPattern.split("/");
+                segments = new Pattern[s.length];
+                for (int i = 0; i < s.length; ++i) {
+                    segments[i] = (s[i].contains("**") ? null : convertWildcardPatternToRegex(s[i]));
+                }
+            }
+        }
+
+        /**
+         * Returns the path of the given class file relative to the base directory
+         * (starting with '/') or <code>null</code>, if it is not below the base directory.
+         */
+        String toBasePath(String path) {
+            if (!path.startsWith(stripPrefix)) {
+                return null;
+            }
+            return "/" + addPrefix + path.substring(stripPrefix.length());
+        }
+
+        boolean matches(String path) {
+            String basePath = toBasePath(path);
+            return basePath != null && regex.matcher(basePath).matches();
+        }
+
+        /**
+         * Returns <code>false</code> if no class file in the given directory
+         * (or any of its sub directories) can match this pattern.
+         */
+        boolean mightMatchBelow(String dirPath) {
+            String dir = dirPath + "/";
+            if (stripPrefix.startsWith(dir)) {
+                // The given directory is a parent directory of the base directory ...
+                return true;
+            }
+            String baseDirPath = toBasePath(dir);
+            if (baseDirPath == null) {
+                return false;
+            }
+            if (segments == null) {
+                return true;
+            }
+            String[] dirSegments = baseDirPath.substring(1).split("/");
+            for (int i = 0; i < dirSegments.length; ++i) {
+                if (i >= segments.length - 1) {
+                    // The last segment of the wildcard pattern matches the class file name ...
+                    return (segments[segments.length - 1] == null);
+                }
+                if (segments[i] == null) {
+                    return true;
+                }
+                if (!segments[i].matcher(dirSegments[i]).matches()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns <code>true</code> if all class files in the given directory
+         * (and all of its sub directories) match this pattern.
+         */
+        boolean matchesEverythingBelow(String dirPath) {
+            if (segments == null || segments[segments.length - 1] != null) {
+                return false;
+            }
+            String baseDirPath = toBasePath(dirPath + "/");
+            if (baseDirPath == null) {
+                return false;
+            }
+            String[] dirSegments = baseDirPath.substring(1).split("/");
+            if (dirSegments.length < segments.length - 1) {
+                return false;
+            }
+            for (int i = 0; i < segments.length - 1; ++i) {
+                if (segments[i] == null || !segments[i].matcher(dirSegments[i]).matches()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final List<CompiledPattern> includes = new ArrayList<>();
+    private final List<CompiledPattern> excludes = new ArrayList<>();
+    private final SortedSet<String> matchingClassFiles = new TreeSet<>();
+
+    /**
+     * Compiles the given wildcard patterns (relative to the given <code>baseDir</code>)
+     * for matching the class files in the given <code>classesDir</code>.
+     */
+    WildcardPatternMatcher(@Nonnull File classesDir, @Nonnull File baseDir, @Nonnull String... wildcardPatterns) throws InitializationError, IOException {
+        String classesPath = classesDir.getCanonicalPath().replace('\\', '/') + "/";
+        for (String wildcardPattern : wildcardPatterns) {
+            if (wildcardPattern == null) {
+                throw new InitializationError("wildcard pattern for the SuiteClasses annotation must not be null");
+            }
+            boolean exclude = wildcardPattern.startsWith("!");
+            if (exclude) {
+                wildcardPattern = wildcardPattern.substring(1);
+            } else if (!wildcardPattern.endsWith(".class")) {
+                throw new InitializationError("wildcard pattern for the SuiteClasses annotation must end with \".class\"");
+            }
+            if (wildcardPattern.startsWith("/")) {
+                throw new InitializationError("wildcard pattern for the SuiteClasses annotation must not start with a '/' character");
+            }
+            File patternBaseDir = baseDir;
+            while (wildcardPattern.startsWith("../")) {
+                patternBaseDir = patternBaseDir.getParentFile();
+                wildcardPattern = wildcardPattern.substring(3);
+            }
+            while (wildcardPattern.contains("***")) {
+                wildcardPattern = wildcardPattern.replace("***", "**");
+            }
+            String basePath = patternBaseDir.getCanonicalPath().replace('\\', '/') + "/";
+            CompiledPattern compiledPattern;
+            if (classesPath.startsWith(basePath)) {
+                // The base directory is the classes directory or one of its parent directories ...
+                compiledPattern = new CompiledPattern("", classesPath.substring(basePath.length()), wildcardPattern);
+            } else if (basePath.startsWith(classesPath)) {
+                // The base directory is a sub directory of the classes directory ...
+                compiledPattern = new CompiledPattern(basePath.substring(classesPath.length()), "", wildcardPattern);
+            } else {
+                // Note: All *.class files not contained in the classes directory are ignored.
+                convertWildcardPatternToRegex("/" + wildcardPattern);
+                continue;
+            }
+            (exclude ? excludes : includes).add(compiledPattern);
+        }
+    }
+
+    @Override
+    public boolean shouldVisit(String dirPath) {
+        if (dirPath.isEmpty()) {
+            return !includes.isEmpty();
+        }
+        for (CompiledPattern exclude : excludes) {
+            if (exclude.matchesEverythingBelow(dirPath)) {
+                return false;
+            }
+        }
+        for (CompiledPattern include : includes) {
+            if (include.mightMatchBelow(dirPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void visitClassFile(String path) {
+        for (CompiledPattern include : includes) {
+            if (include.matches(path)) {
+                for (CompiledPattern exclude : excludes) {
+                    if (exclude.matches(path)) {
+                        return;
+                    }
+                }
+                matchingClassFiles.add(path);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the paths (relative to the classes directory) of all
+     * visited class files matching the wildcard patterns.
+     */
+    SortedSet<String> getMatchingClassFiles() {
+        return matchingClassFiles;
+    }
+
+    private static Pattern convertWildcardPatternToRegex(String wildCardPattern) throws InitializationError {
+        String s = wildCardPattern;
+        while (s.contains("***")) {
+            s = s.replace("***", "**");
+        }
+        String suffix;
+        if (s.endsWith("/**")) {
+            s = s.substring(0, s.length() - 3);
+            suffix = "(.*)";
+        } else {
+            suffix ="";
+        }
+        s = s.replace(".", "[.]");
+        s = s.replace("/**/", "/::/");
+        s = s.replace("*", "([^/]*)");
+        s = s.replace("/::/", "((/.*/)|(/))");
+        s = s.replace("?", ".");
+        if (s.contains("**")) {
+            throw new InitializationError("Invalid wildcard pattern \"" + wildCardPattern + "\"");
+        }
+        return Pattern.compile(s + suffix);
+    }
+}
@@ -1,11 +1,8 @@
 package com.googlecode.junittoolbox;
 
 import com.googlecode.junittoolbox.util.JUnit4TestChecker;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.AbstractFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.junit.experimental.categories.Categories;
+import org.junit.runner.Runner;
 import org.junit.runner.manipulation.Filter;
 import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runners.Suite;
@@ -17,7 +14,6 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
-import java.util.regex.Pattern;
 
 import static org.junit.experimental.categories.Categories.*;
 
@@ -52,114 +48,180 @@ import static org.junit.experimental.categories.Categories.*;
  *     &#64;ExcludeCategories({SlowTests.class, FlakyTests.class})
  *     public class NormalTests {}
  * </pre>
+ * If you want to distribute your tests to several JVMs or CI nodes,
+ * you can specify the shard to execute with the system property
+ * <code>testShard</code>, e.g. <code>-DtestShard=3/12</code>
+ * executes only the children classes belonging to the 3rd of 12
+ * shards (see {@link TestShard} for details). The children classes
+ * of other shards are neither loaded nor executed. Nested suites are
+ * not sharded again.
  */
 public class WildcardPatternSuite extends Suite {
 
-    private static Class<?>[] getSuiteClasses(Class<?> klass) throws InitializationError {
+    /**
+     * Set while the runners for the children classes of a sharded suite are created,
+     * to make sure that nested suites are not sharded again.
+     */
+    private static final ThreadLocal<Boolean> CREATING_RUNNERS_FOR_SHARDED_SUITE = new ThreadLocal<>();
+
+    private static List<Runner> getRunners(Class<?> klass, RunnerBuilder builder) throws InitializationError {
+        TestShard testShard = (CREATING_RUNNERS_FOR_SHARDED_SUITE.get() == null ? TestShard.fromSystemProperty() : null);
+        Class<?>[] suiteClasses = getSuiteClasses(klass, testShard);
+        if (testShard == null) {
+            return builder.runners(klass, suiteClasses);
+        }
+        CREATING_RUNNERS_FOR_SHARDED_SUITE.set(Boolean.TRUE);
+        try {
+            return builder.runners(klass, suiteClasses);
+        } finally {
+            CREATING_RUNNERS_FOR_SHARDED_SUITE.remove();
+        }
+    }
+
+    private static Class<?>[] getSuiteClasses(Class<?> klass, TestShard testShard) throws InitializationError {
         org.junit.runners.Suite.SuiteClasses annotation1 = klass.getAnnotation(org.junit.runners.Suite.SuiteClasses.class);
         com.googlecode.junittoolbox.SuiteClasses annotation2 = klass.getAnnotation(com.googlecode.junittoolbox.SuiteClasses.class);
         if (annotation1 == null && annotation2 == null) {
             throw new InitializationError("class " + klass.getName() + " must have a SuiteClasses annotation");
         }
         Class<?>[] suiteClasses1 = (annotation1 == null ? null : annotation1.value());
-        Class<?>[] suiteClasses2 = (annotation2 == null ? null : findSuiteClasses(klass, annotation2.value()));
+        List<String> classNames2 = (annotation2 == null ? null : findSuiteClassNames(klass, annotation2.value()));
+        ClassFileTestChecker classFileTestChecker = new ClassFileTestChecker(klass.getClassLoader());
+        // Note: Non-test classes are removed before sharding, so that they do not count as shard members ...
+        boolean excludedTestClasses = (classNames2 != null && removeNonTestClasses(klass, classNames2, classFileTestChecker));
+        if (testShard != null) {
+            Set<String> allClassNames = new LinkedHashSet<>();
+            if (suiteClasses1 != null) {
+                for (Class<?> suiteClass : suiteClasses1) {
+                    allClassNames.add(suiteClass.getName());
+                }
+            }
+            if (classNames2 != null) {
+                allClassNames.addAll(classNames2);
+            }
+            Set<String> selectedClassNames = testShard.select(allClassNames, TimingHistory.getInstance());
+            if (suiteClasses1 != null) {
+                suiteClasses1 = Arrays.stream(suiteClasses1).filter(c -> selectedClassNames.contains(c.getName())).toArray(Class<?>[]::new);
+            }
+            if (classNames2 != null) {
+                classNames2.retainAll(selectedClassNames);
+            }
+        }
+        boolean hasOtherSuiteClasses = (suiteClasses1 != null && suiteClasses1.length > 0);
+        Class<?>[] suiteClasses2 = (classNames2 == null ? null : loadTestClasses(klass, classNames2, classFileTestChecker, annotation2.value(), testShard == null, excludedTestClasses, hasOtherSuiteClasses));
         return union(suiteClasses1, suiteClasses2);
     }
 
-    private static Class<?>[] findSuiteClasses(Class<?> klass, String... wildcardPatterns) throws InitializationError {
+    private static List<String> findSuiteClassNames(Class<?> klass, String... wildcardPatterns) throws InitializationError {
         File baseDir = getBaseDir(klass);
-        SortedSet<File> classFiles = findFiles(baseDir, wildcardPatterns);
+        ClassFileIndex classFileIndex;
+        try {
+            classFileIndex = ClassFileIndex.forClassesDir(getClassesDir(klass));
+        } catch (IOException e) {
+            throw new InitializationError("Failed to scan " + baseDir + " using wildcard patterns " + Arrays.toString(wildcardPatterns) + " -- " + e);
+        }
+        SortedSet<String> classFiles = findFiles(classFileIndex, baseDir, wildcardPatterns);
         if (classFiles.isEmpty()) {
             throw new InitializationError("Did not find any *.class file using the specified wildcard patterns " + Arrays.toString(wildcardPatterns) + " relative to directory " + baseDir);
         }
-        File testClassesDir = getClassesDir(klass);
-        String testClassesPath;
-        try {
-            testClassesPath = testClassesDir.getCanonicalPath().replace('\\', '/');
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
+        List<String> classNames = new ArrayList<>();
+        for (String path : classFiles) {
+            classNames.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+        }
+        return classNames;
+    }
+
+    /**
+     * Removes the names of all classes from the given list, which are no test classes
+     * according to the given <code>classFileTestChecker</code> or which are excluded by
+     * the categories of the given suite class, without loading any class. Returns
+     * <code>true</code> if a test class has been removed, because of its categories.
+     */
+    private static boolean removeNonTestClasses(Class<?> klass, List<String> classNames, ClassFileTestChecker classFileTestChecker) {
+        ClassLoader classLoader = klass.getClassLoader();
+        CategoriesFilter categoriesFilter = CategoriesFilter.forTestSuite(klass);
+        boolean excludedTestClasses = false;
+        for (Iterator<String> i = classNames.iterator(); i.hasNext(); ) {
+            String className = i.next();
+            ClassFileTestChecker.Result result = classFileTestChecker.check(className);
+            if (result == ClassFileTestChecker.Result.NO_TEST) {
+                i.remove();
+            } else if (result == ClassFileTestChecker.Result.TEST && categoriesFilter != null && isExcludedByCategories(className, classFileTestChecker, categoriesFilter, classLoader)) {
+                excludedTestClasses = true;
+                i.remove();
+            }
         }
+        return excludedTestClasses;
+    }
+
+    private static Class<?>[] loadTestClasses(Class<?> klass, List<String> classNames, ClassFileTestChecker classFileTestChecker, String[] wildcardPatterns, boolean failIfEmpty, boolean excludedTestClasses, boolean hasOtherSuiteClasses) throws InitializationError {
         List<Class<?>> testClasses = new ArrayList<>();
         ClassLoader classLoader = klass.getClassLoader();
         JUnit4TestChecker junit4TestChecker = new JUnit4TestChecker(classLoader);
-        for (File file : classFiles) {
+        for (String className : classNames) {
+            // Classes, which might be test classes, are loaded to check them with the JUnit4TestChecker ...
+            ClassFileTestChecker.Result result = classFileTestChecker.check(className);
             try {
-                String canonicalPath = file.getCanonicalPath().replace('\\', '/');
-                if (!canonicalPath.startsWith(testClassesPath)) {
-                    // Ignore all *.class files not contained in testClassesDir ...
-                    continue;
-                }
-                String path = canonicalPath.substring(testClassesPath.length() + 1);
-                String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
                 Class<?> clazz = classLoader.loadClass(className);
-                if (junit4TestChecker.accept(clazz)) {
+                if (result == ClassFileTestChecker.Result.TEST || junit4TestChecker.accept(clazz)) {
                     testClasses.add(clazz);
                 }
             } catch (Exception e) {
-                throw new InitializationError("Failed to load " + file + " -- " + e.getMessage());
+                throw new InitializationError("Failed to load " + className + " -- " + e.getMessage());
             }
         }
-        if (testClasses.isEmpty()) {
-            throw new InitializationError("Did not find any test classes using the specified wildcard patterns " + Arrays.toString(wildcardPatterns) + " relative to directory " + baseDir);
+        if (testClasses.isEmpty() && failIfEmpty) {
+            if (excludedTestClasses) {
+                // The other suite classes are filtered in the constructor ...
+                if (hasOtherSuiteClasses) {
+                    return new Class<?>[0];
+                }
+                throw new InitializationError(new NoTestsRemainException());
+            }
+            throw new InitializationError("Did not find any test classes using the specified wildcard patterns " + Arrays.toString(wildcardPatterns) + " relative to directory " + getBaseDir(klass));
         }
         return testClasses.toArray(new Class[testClasses.size()]);
     }
 
-    private static SortedSet<File> findFiles(File baseDir, String... wildcardPatterns) throws InitializationError {
+    /**
+     * Returns <code>true</code> if the given test class does not need to be loaded,
+     * because none of its tests would pass the given <code>categoriesFilter</code>
+     * (which is still applied to the loaded test classes in the constructor).
+     */
+    private static boolean isExcludedByCategories(String className, ClassFileTestChecker classFileTestChecker, CategoriesFilter categoriesFilter, ClassLoader classLoader) {
+        List<List<String>> categoryCombinations = classFileTestChecker.getCategoryCombinations(className);
+        if (categoryCombinations == null) {
+            return false;
+        }
         try {
-            SortedSet<File> included = new TreeSet<>();
-            Set<File> excluded = new HashSet<>();
-            for (String wildcardPattern: wildcardPatterns) {
-                if (wildcardPattern == null) {
-                    throw new InitializationError("wildcard pattern for the SuiteClasses annotation must not be null");
-                } else if (wildcardPattern.startsWith("!")) {
-                    excluded.addAll(findFiles(baseDir, wildcardPattern.substring(1)));
-                } else {
-                    if (!wildcardPattern.endsWith(".class")) {
-                        throw new InitializationError("wildcard pattern for the SuiteClasses annotation must end with \".class\"");
-                    }
-                    included.addAll(findFiles(baseDir, wildcardPattern));
+            for (List<String> categoryNames : categoryCombinations) {
+                List<Class<?>> categories = new ArrayList<>();
+                for (String categoryName : categoryNames) {
+                    // Category classes are loaded without being initialized ...
+                    categories.add(Class.forName(categoryName, false, classLoader));
+                }
+                if (categoriesFilter.shouldRun(categories)) {
+                    return false;
                 }
             }
-            included.removeAll(excluded);
-            return included;
-        } catch (IOException e) {
-            throw new InitializationError("Failed to scan " + baseDir + " using wildcard patterns " + Arrays.toString(wildcardPatterns) + " -- " + e);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
         }
+        return true;
     }
 
-    private static Collection<File> findFiles(File baseDir, String wildcardPattern) throws InitializationError, IOException {
-        if (wildcardPattern.startsWith("/")) {
-            throw new InitializationError("wildcard pattern for the SuiteClasses annotation must not start with a '/' character");
-        }
-        while (wildcardPattern.startsWith("../")) {
-            baseDir = baseDir.getParentFile();
-            wildcardPattern = wildcardPattern.substring(3);
-        }
-        Pattern regex = convertWildcardPatternToRegex("/" + wildcardPattern);
-        String basePath = baseDir.getCanonicalPath().replace('\\', '/');
-        IOFileFilter fileFilter = new AbstractFileFilter() {
-            @Override
-            public boolean accept(File file) {
-                try {
-                    // Never accept directories, hidden files, and inner classes ...
-                    if (file.isDirectory() || file.isHidden() || file.getName().contains("$")) {
-                        return false;
-                    }
-                    String canonicalPath = file.getCanonicalPath().replace('\\', '/');
-                    if (canonicalPath.startsWith(basePath)) {
-                        String path = canonicalPath.substring(basePath.length());
-                        if (regex.matcher(path).matches()) {
-                            return true;
-                        }
-                    }
-                    return false;
-                } catch (IOException e) {
-                    throw new RuntimeException(e.getMessage());
-                }
-            }
-        };
-        return FileUtils.listFiles(baseDir, fileFilter, TrueFileFilter.INSTANCE);
+    /**
+     * Returns the paths (relative to the classes directory) of all class files
+     * in the given <code>classFileIndex</code> matching the given wildcard patterns.
+     */
+    private static SortedSet<String> findFiles(ClassFileIndex classFileIndex, File baseDir, String... wildcardPatterns) throws InitializationError {
+        try {
+            WildcardPatternMatcher matcher = new WildcardPatternMatcher(classFileIndex.getClassesDir(), baseDir, wildcardPatterns);
+            classFileIndex.accept(matcher);
+            return matcher.getMatchingClassFiles();
+        } catch (IOException e) {
+            throw new InitializationError("Failed to scan " + baseDir + " using wildcard patterns " + Arrays.toString(wildcardPatterns) + " -- " + e);
+        }
     }
 
     private static File getBaseDir(Class<?> klass) throws InitializationError {
@@ -180,29 +242,6 @@ public class WildcardPatternSuite extends Suite {
         }
     }
 
-    private static Pattern convertWildcardPatternToRegex(String wildCardPattern) throws InitializationError {
-        String s = wildCardPattern;
-        while (s.contains("***")) {
-            s = s.replace("***", "**");
-        }
-        String suffix;
-        if (s.endsWith("/**")) {
-            s = s.substring(0, s.length() - 3);
-            suffix = "(.*)";
-        } else {
-            suffix ="";
-        }
-        s = s.replace(".", "[.]");
-        s = s.replace("/**/", "/::/");
-        s = s.replace("*", "([^/]*)");
-        s = s.replace("/::/", "((/.*/)|(/))");
-        s = s.replace("?", ".");
-        if (s.contains("**")) {
-            throw new InitializationError("Invalid wildcard pattern \"" + wildCardPattern + "\"");
-        }
-        return Pattern.compile(s + suffix);
-    }
-
     private static Class<?>[] union(Class<?>[] suiteClasses1, Class<?>[] suiteClasses2) {
         if (suiteClasses1 == null) {
             return suiteClasses2;
@@ -219,9 +258,9 @@ public class WildcardPatternSuite extends Suite {
     }
 
     public WildcardPatternSuite(Class<?> klass, RunnerBuilder builder) throws InitializationError {
-        super(builder, klass, getSuiteClasses(klass));
+        super(klass, getRunners(klass, builder));
         Filter filter = CategoriesFilter.forTestSuite(klass);
-        if (filter != null) {
+        if (filter != null && !getChildren().isEmpty()) {
             try {
                 filter(filter);
             } catch (NoTestsRemainException e) {
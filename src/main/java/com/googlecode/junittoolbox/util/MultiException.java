@@ -14,23 +14,79 @@
 
 package com.googlecode.junittoolbox.util;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Allows multiple exceptions to be thrown as a single exception -- adapted from Jetty.
+ * Exceptions with the same <em>signature</em> (i.e. the same exception class and
+ * the same stack trace, including the causes, regardless of the message) are
+ * only counted, only the first one is kept, so that a <code>MultiException</code>
+ * stays small, even if the same failure occurs thousands of times.
+ * At most {@value #MAX_SIGNATURES} different signatures are kept, further
+ * exceptions with other signatures are only counted.
+ * {@link #add} is lock-free, if the signature of the given exception
+ * has already been seen, so it can be called by many threads concurrently.
+ * <p>The {@link #getMessage message} contains at most the number of signatures
+ * specified by the system property <code>maxRenderedExceptions</code> (default: 20)
+ * and at most the number of characters specified by the system property
+ * <code>maxRenderedMessageLength</code> (default: 100000), it is only rendered
+ * once (until another exception is added). All kept exceptions are available
+ * via {@link #getFullMessage()}.
  */
 @ThreadSafe
 public class MultiException extends RuntimeException {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     private static final String EXCEPTION_SEPARATOR = "\n\t______________________________________________________________________\n";
 
-    private final List<Throwable> nested = new ArrayList<>();
+    /**
+     * The maximum number of different exception signatures kept by a <code>MultiException</code>.
+     */
+    public static final int MAX_SIGNATURES = 100;
+
+    private static final int DEFAULT_MAX_RENDERED_EXCEPTIONS = 20;
+
+    private static class Occurrences implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Throwable first;
+        final long seqNo;
+        final LongAdder count = new LongAdder();
+
+        Occurrences(Throwable first, long seqNo) {
+            this.first = first;
+            this.seqNo = seqNo;
+        }
+    }
+
+    private final ConcurrentMap<List<Object>, Occurrences> nested = new ConcurrentHashMap<>();
+    private final AtomicInteger numSignatures = new AtomicInteger();
+    private final AtomicLong nextSeqNo = new AtomicLong();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder omitted = new LongAdder();
+
+    private static class RenderedMessage implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final long size;
+        final String message;
+
+        RenderedMessage(long size, String message) {
+            this.size = size;
+            this.message = message;
+        }
+    }
+
+    private volatile RenderedMessage renderedMessage;
 
     public MultiException() {
         super("Multiple exceptions");
@@ -41,23 +97,71 @@ public class MultiException extends RuntimeException {
      */
     public void add(@Nullable Throwable throwable) {
         if (throwable != null) {
-            synchronized (nested) {
-                if (throwable instanceof MultiException) {
-                    MultiException other = (MultiException) throwable;
-                    synchronized (other.nested) {
-                        nested.addAll(other.nested);
-                    }
-                } else {
-                    nested.add(throwable);
+            if (throwable instanceof MultiException) {
+                MultiException other = (MultiException) throwable;
+                for (Occurrences occurrences : other.getOccurrences()) {
+                    add(occurrences.first, occurrences.count.sum());
                 }
+                long otherOmitted = other.omitted.sum();
+                omitted.add(otherOmitted);
+                total.add(otherOmitted);
+            } else {
+                add(throwable, 1);
             }
         }
     }
 
-    public boolean isEmpty() {
-        synchronized (nested) {
-            return nested.isEmpty();
+    private void add(@Nonnull Throwable throwable, long count) {
+        List<Object> signature = signatureOf(throwable);
+        Occurrences occurrences = nested.get(signature);
+        if (occurrences == null) {
+            if (numSignatures.incrementAndGet() > MAX_SIGNATURES) {
+                numSignatures.decrementAndGet();
+                omitted.add(count);
+                total.add(count);
+                return;
+            }
+            Occurrences newOccurrences = new Occurrences(throwable, nextSeqNo.getAndIncrement());
+            occurrences = nested.putIfAbsent(signature, newOccurrences);
+            if (occurrences == null) {
+                occurrences = newOccurrences;
+            } else {
+                // Another thread added the same signature concurrently ...
+                numSignatures.decrementAndGet();
+            }
+        }
+        occurrences.count.add(count);
+        total.add(count);
+    }
+
+    private static List<Object> signatureOf(@Nonnull Throwable throwable) {
+        List<Object> signature = new ArrayList<>();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable t = throwable; t != null && seen.add(t); t = t.getCause()) {
+            signature.add(t.getClass().getName());
+            Collections.addAll(signature, t.getStackTrace());
         }
+        return signature;
+    }
+
+    private List<Occurrences> getOccurrences() {
+        List<Occurrences> result = new ArrayList<>(nested.values());
+        result.sort(Comparator.comparingLong(occurrences -> occurrences.seqNo));
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return total.sum() == 0;
+    }
+
+    /**
+     * Returns the number of all added exceptions, including the
+     * ones, which were only counted because of their signature.
+     *
+     * @since 2.6
+     */
+    public long size() {
+        return total.sum();
     }
 
     /**
@@ -66,36 +170,89 @@ public class MultiException extends RuntimeException {
      * otherwise this <code>MultiException</code> is thrown.
      */
     public void throwIfNotEmpty() {
-        synchronized (nested) {
-            if (nested.isEmpty()) {
-                // Do nothing
-            } else if (nested.size() == 1) {
-                Throwable t = nested.get(0);
-                TigerThrower.sneakyThrow(t);
-            } else {
-                throw this;
-            }
+        long n = total.sum();
+        if (n == 0) {
+            // Do nothing
+        } else if (n == 1 && omitted.sum() == 0) {
+            Throwable t = getOccurrences().get(0).first;
+            TigerThrower.sneakyThrow(t);
+        } else {
+            throw this;
         }
     }
 
+    /**
+     * Returns a message, which contains the stack trace of the first exception
+     * of each signature, prefixed with the number of occurrences of that signature
+     * (e.g. <code>"1000&times; java.lang.AssertionError: ..."</code>).
+     * The length of the message is limited (see above), the message is cached
+     * until another exception is added.
+     */
     @Override
     public String getMessage() {
-        synchronized (nested) {
-            if (nested.isEmpty()) {
-                return "<no nested exceptions>";
-            } else {
-                StringBuilder sb = new StringBuilder();
-                int n = nested.size();
-                sb.append(n).append(n == 1 ? " nested exception:" : " nested exceptions:");
-                for (Throwable t : nested) {
-                    sb.append(EXCEPTION_SEPARATOR).append("\n\t");
-                    StringWriter sw = new StringWriter();
-                    t.printStackTrace(new PrintWriter(sw));
-                    sb.append(sw.toString().replace("\n", "\n\t").trim());
+        long size = total.sum();
+        RenderedMessage rendered = renderedMessage;
+        if (rendered == null || rendered.size != size) {
+            int maxExceptions = StackTraceRenderer.getIntegerSystemProperty("maxRenderedExceptions", DEFAULT_MAX_RENDERED_EXCEPTIONS);
+            rendered = new RenderedMessage(size, render(maxExceptions, StackTraceRenderer.getDefaultMaxLength()));
+            renderedMessage = rendered;
+        }
+        return rendered.message;
+    }
+
+    /**
+     * Like {@link #getMessage()}, but contains the stack traces of
+     * all kept exceptions, regardless of the length of the message.
+     *
+     * @since 2.6
+     */
+    public String getFullMessage() {
+        return render(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Internal method, package private for testing.
+     */
+    String render(int maxExceptions, int maxLength) {
+        List<Occurrences> occurrencesList = getOccurrences();
+        if (occurrencesList.isEmpty() && omitted.sum() == 0) {
+            return "<no nested exceptions>";
+        } else {
+            StackTraceRenderer renderer = new StackTraceRenderer(maxLength);
+            long n = 0;
+            for (Occurrences occurrences : occurrencesList) {
+                n += occurrences.count.sum();
+            }
+            long numOmitted = omitted.sum();
+            n += numOmitted;
+            renderer.append(n).append(n == 1 ? " nested exception:" : " nested exceptions:");
+            int numRendered = 0;
+            for (Occurrences occurrences : occurrencesList) {
+                if (numRendered == maxExceptions || renderer.isTruncated()) {
+                    break;
                 }
-                sb.append(EXCEPTION_SEPARATOR);
-                return sb.toString();
+                renderer.append(EXCEPTION_SEPARATOR).append("\n\t");
+                renderer.append(occurrences.count.sum()).append("\u00d7 ");
+                renderer.appendStackTrace(occurrences.first);
+                ++numRendered;
+            }
+            StringBuilder notice = new StringBuilder();
+            if (renderer.isTruncated()) {
+                notice.append("\n\t...");
+            }
+            if (numRendered < occurrencesList.size()) {
+                int numNotRendered = occurrencesList.size() - numRendered;
+                notice.append(EXCEPTION_SEPARATOR).append("\n\t");
+                notice.append(numNotRendered).append(numNotRendered == 1 ? " other signature" : " other signatures");
+                notice.append(" not shown, see getFullMessage()");
+            }
+            if (numOmitted > 0) {
+                notice.append(EXCEPTION_SEPARATOR).append("\n\t");
+                notice.append(numOmitted).append(numOmitted == 1 ? " exception" : " exceptions");
+                notice.append(" with more than ").append(MAX_SIGNATURES).append(" different signatures omitted");
             }
+            notice.append(EXCEPTION_SEPARATOR);
+            return renderer.toString("") + notice;
         }
     }
 }
@@ -0,0 +1,150 @@
+package com.googlecode.junittoolbox.util;
+
+import javax.annotation.Nonnull;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Renders stack traces into a message with a limited length, each line of a stack
+ * trace is indented with a tab. The stack traces are written directly into the
+ * message (instead of printing them into a <code>StringWriter</code> first),
+ * as soon as the maximum length is reached, everything else is omitted.
+ * The default maximum length is specified by the system property
+ * <code>maxRenderedMessageLength</code> (default: 100000).
+ *
+ * @since 2.6
+ */
+public class StackTraceRenderer {
+
+    private static final int DEFAULT_MAX_LENGTH = 100000;
+
+    /**
+     * Returns the value of the system property <code>maxRenderedMessageLength</code>
+     * or <code>100000</code>, if it is not specified.
+     */
+    public static int getDefaultMaxLength() {
+        return getIntegerSystemProperty("maxRenderedMessageLength", DEFAULT_MAX_LENGTH);
+    }
+
+    static int getIntegerSystemProperty(String name, int defaultValue) {
+        try {
+            String value = System.getProperty(name);
+            return value == null ? defaultValue : Math.max(1, Integer.parseInt(value));
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
+    private final StringBuilder sb = new StringBuilder();
+    private final int maxLength;
+    private boolean truncated;
+
+    /**
+     * Creates a <code>StackTraceRenderer</code> with the {@link #getDefaultMaxLength default maximum length}.
+     */
+    public StackTraceRenderer() {
+        this(getDefaultMaxLength());
+    }
+
+    /**
+     * @param maxLength the maximum number of characters of the rendered message
+     *                  (not counting the notice, which is appended if something was omitted)
+     */
+    public StackTraceRenderer(int maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("Invalid maxLength: " + maxLength + " -- must be greater than 0");
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Appends the given text, returns <code>this</code> to allow method chaining.
+     */
+    public StackTraceRenderer append(@Nonnull CharSequence s) {
+        for (int i = 0, n = s.length(); i < n && !truncated; ++i) {
+            appendChar(s.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Appends the given number, returns <code>this</code> to allow method chaining.
+     */
+    public StackTraceRenderer append(long x) {
+        return append(Long.toString(x));
+    }
+
+    /**
+     * Appends the stack trace of the given <code>Throwable</code>, each line
+     * except the first one is indented with a tab and the trailing line separator is
+     * omitted, returns <code>this</code> to allow method chaining.
+     */
+    public StackTraceRenderer appendStackTrace(@Nonnull Throwable t) {
+        if (!truncated) {
+            IndentingWriter writer = new IndentingWriter();
+            t.printStackTrace(new PrintWriter(writer));
+        }
+        return this;
+    }
+
+    /**
+     * Returns <code>true</code> if the maximum length has been
+     * reached and some text has been omitted.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Returns the rendered message, if something has been omitted,
+     * the given <code>notice</code> is appended.
+     */
+    @Nonnull
+    public String toString(@Nonnull String noticeIfTruncated) {
+        return truncated ? sb + noticeIfTruncated : sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toString("...");
+    }
+
+    private void appendChar(char c) {
+        if (sb.length() >= maxLength) {
+            truncated = true;
+        } else {
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Writes into {@link #sb}, replaces each line separator with
+     * <code>"\n\t"</code>, but omits the trailing line separator.
+     */
+    private class IndentingWriter extends Writer {
+        private boolean pendingNewLine;
+
+        @Override
+        public void write(@Nonnull char[] chars, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end && !truncated; ++i) {
+                char c = chars[i];
+                if (c == '\n') {
+                    pendingNewLine = true;
+                } else if (c != '\r') {
+                    if (pendingNewLine) {
+                        appendChar('\n');
+                        appendChar('\t');
+                        pendingNewLine = false;
+                    }
+                    appendChar(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
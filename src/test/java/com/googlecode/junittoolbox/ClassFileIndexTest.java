@@ -0,0 +1,140 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ClassFileIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File classesDir;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        classesDir = temporaryFolder.newFolder("test-classes");
+        indexFile = new File(temporaryFolder.getRoot(), "junit-toolbox/test-classes.index");
+        createFile("a/ATest.class");
+        createFile("a/ATest$Inner.class");
+        createFile("a/b/BTest.class");
+        createFile("a/b/readme.txt");
+        createFile("CTest.class");
+    }
+
+    private void createFile(String path) throws IOException {
+        File file = new File(classesDir, path);
+        file.getParentFile().mkdirs();
+        assertTrue(file.createNewFile());
+        makeOld(file.getParentFile());
+    }
+
+    private void makeOld(File dir) {
+        // Make sure that the modification time is older than the granularity of the file system ...
+        long oneMinuteAgo = System.currentTimeMillis() - 60000;
+        while (dir != null && !dir.equals(classesDir.getParentFile())) {
+            assertTrue(dir.setLastModified(oneMinuteAgo));
+            dir = dir.getParentFile();
+        }
+    }
+
+    private static List<String> getClassFiles(ClassFileIndex index) throws IOException {
+        List<String> classFiles = new ArrayList<>();
+        index.accept(new ClassFileIndex.Visitor() {
+            @Override
+            public boolean shouldVisit(String dirPath) {
+                return true;
+            }
+
+            @Override
+            public void visitClassFile(String path) {
+                classFiles.add(path);
+            }
+        });
+        return classFiles;
+    }
+
+    @Test
+    public void test_getClassFiles() throws Exception {
+        ClassFileIndex index = new ClassFileIndex(classesDir, indexFile);
+        assertThat(getClassFiles(index), contains("CTest.class", "a/ATest.class", "a/b/BTest.class"));
+        assertTrue(indexFile.isFile());
+    }
+
+    @Test
+    public void test_unchanged_directories_are_taken_from_saved_index() throws Exception {
+        ClassFileIndex index1 = new ClassFileIndex(classesDir, indexFile);
+        getClassFiles(index1);
+        assertTrue(indexFile.setLastModified(0));
+        ClassFileIndex index2 = new ClassFileIndex(classesDir, indexFile);
+        index2.load();
+        assertThat(getClassFiles(index2), contains("CTest.class", "a/ATest.class", "a/b/BTest.class"));
+        // The index file is only saved again, if a directory had to be listed again ...
+        assertThat(indexFile.lastModified(), is(0L));
+    }
+
+    @Test
+    public void test_changed_directories_are_listed_again() throws Exception {
+        ClassFileIndex index1 = new ClassFileIndex(classesDir, indexFile);
+        getClassFiles(index1);
+        createFile("a/b/DTest.class");
+        assertTrue(new File(classesDir, "CTest.class").delete());
+        // Make sure that the modification times differ from the ones in the saved index ...
+        long thirtySecondsAgo = System.currentTimeMillis() - 30000;
+        assertTrue(new File(classesDir, "a/b").setLastModified(thirtySecondsAgo));
+        assertTrue(classesDir.setLastModified(thirtySecondsAgo));
+        ClassFileIndex index2 = new ClassFileIndex(classesDir, indexFile);
+        index2.load();
+        assertThat(getClassFiles(index2), contains("a/ATest.class", "a/b/BTest.class", "a/b/DTest.class"));
+    }
+
+    @Test
+    public void test_directories_not_visited_are_not_listed() throws Exception {
+        ClassFileIndex index = new ClassFileIndex(classesDir, indexFile);
+        List<String> visitedDirs = new ArrayList<>();
+        List<String> classFiles = new ArrayList<>();
+        index.accept(new ClassFileIndex.Visitor() {
+            @Override
+            public boolean shouldVisit(String dirPath) {
+                visitedDirs.add(dirPath);
+                return !dirPath.equals("a/b");
+            }
+
+            @Override
+            public void visitClassFile(String path) {
+                classFiles.add(path);
+            }
+        });
+        assertThat(visitedDirs, contains("", "a", "a/b"));
+        assertThat(classFiles, contains("CTest.class", "a/ATest.class"));
+    }
+
+    @Test
+    public void test_several_instances_sharing_an_index_file() throws Exception {
+        // Each ClassFileIndex simulates another JVM saving the same index file ...
+        new MultithreadingTester().numThreads(8).numRoundsPerThread(5).add(() -> {
+            ClassFileIndex index = new ClassFileIndex(classesDir, indexFile);
+            getClassFiles(index);
+            index.save();
+            return null;
+        }).run();
+        ClassFileIndex index = new ClassFileIndex(classesDir, indexFile);
+        index.load();
+        assertTrue(indexFile.setLastModified(0));
+        assertThat(getClassFiles(index), contains("CTest.class", "a/ATest.class", "a/b/BTest.class"));
+        // The index has been read completely, therefore it has not been saved again ...
+        assertThat(indexFile.lastModified(), is(0L));
+        // No temp file has been left behind ...
+        assertThat(indexFile.getParentFile().list(), arrayContaining(indexFile.getName()));
+    }
+}
@@ -0,0 +1,101 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.samples.FlakyTests;
+import com.googlecode.junittoolbox.samples.LoginBeanTest;
+import com.googlecode.junittoolbox.samples.SlowTests;
+import com.googlecode.junittoolbox.samples.frontend.LoginFrontendTest;
+import com.googlecode.junittoolbox.samples.frontend.SomeClass;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.experimental.theories.Theories;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static com.googlecode.junittoolbox.ClassFileTestChecker.Result.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ClassFileTestCheckerTest {
+
+    public static abstract class AbstractExample {
+        @Test
+        public void test() {}
+    }
+
+    public static class Example_with_inherited_test_method extends AbstractExample {}
+
+    @RunWith(JUnit4.class)
+    public static class Example_with_RunWith {}
+
+    public static class Example_with_inherited_RunWith extends Example_with_RunWith {}
+
+    public static class JUnit3_style_example extends TestCase {
+        public void test() {}
+    }
+
+    public static class Example_with_suite_method {
+        public static junit.framework.Test suite() {
+            return null;
+        }
+    }
+
+    static volatile boolean initialized;
+
+    public static class Example_without_test_methods {
+        static {
+            initialized = true;
+        }
+
+        @Deprecated
+        public void test() {}
+    }
+
+    private final ClassFileTestChecker checker = new ClassFileTestChecker(ClassFileTestCheckerTest.class.getClassLoader());
+
+    @Test
+    public void test_test_classes() {
+        assertThat(checker.check(LoginBeanTest.class.getName()), is(TEST));
+        assertThat(checker.check(Example_with_inherited_test_method.class.getName()), is(TEST));
+        assertThat(checker.check(Example_with_RunWith.class.getName()), is(TEST));
+        assertThat(checker.check(Example_with_inherited_RunWith.class.getName()), is(TEST));
+        assertThat(checker.check(JUnit3_style_example.class.getName()), is(TEST));
+    }
+
+    @Test
+    public void test_classes_which_are_no_test_classes() {
+        assertThat(checker.check(SomeClass.class.getName()), is(NO_TEST));
+        assertThat(checker.check(AbstractExample.class.getName()), is(NO_TEST));
+        assertThat(checker.check(RunnableAssert.class.getName()), is(NO_TEST));
+    }
+
+    @Test
+    public void test_classes_are_not_initialized() {
+        assertThat(checker.check(ClassFileTestCheckerTest.class.getName() + "$Example_without_test_methods"), is(NO_TEST));
+        assertFalse(initialized);
+    }
+
+    @Test
+    public void test_undecidable_classes() {
+        assertThat(checker.check(Example_with_suite_method.class.getName()), is(UNKNOWN));
+        assertThat(checker.check("com.example.DoesNotExist"), is(UNKNOWN));
+    }
+
+    @RunWith(Theories.class)
+    public static class Example_with_Theories {
+        @Test
+        public void test() {}
+    }
+
+    @Test
+    public void test_getCategoryCombinations() {
+        assertThat(checker.getCategoryCombinations(LoginFrontendTest.class.getName()), is(asList(
+            emptyList(), emptyList(), singletonList(SlowTests.class.getName()), singletonList(FlakyTests.class.getName())
+        )));
+        assertThat(checker.getCategoryCombinations(Example_with_inherited_test_method.class.getName()), is(asList(emptyList(), emptyList())));
+        assertThat(checker.getCategoryCombinations(Example_with_Theories.class.getName()), is(nullValue()));
+        assertThat(checker.getCategoryCombinations(Example_with_suite_method.class.getName()), is(nullValue()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.util.MultiException;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class DeadlockMonitorTest {
+
+    private static Thread startThread(String name, ReentrantLock first, ReentrantLock second, CountDownLatch latch) {
+        Thread thread = new Thread(() -> {
+            first.lock();
+            try {
+                latch.countDown();
+                latch.await();
+                second.lock();
+                second.unlock();
+            } catch (InterruptedException ignored) {
+            } finally {
+                first.unlock();
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(Thread thread, ReentrantLock lock) throws InterruptedException {
+        while (!lock.hasQueuedThread(thread)) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_findDeadlock() throws Exception {
+        ReentrantLock lock1 = new ReentrantLock();
+        ReentrantLock lock2 = new ReentrantLock();
+        CountDownLatch latch = new CountDownLatch(2);
+        Thread t1 = startThread("DeadlockMonitorTest-1", lock1, lock2, latch);
+        Thread t2 = startThread("DeadlockMonitorTest-2", lock2, lock1, latch);
+        awaitQueued(t1, lock2);
+        awaitQueued(t2, lock1);
+        // Only t1 is monitored, but t2 is part of the deadlock too ...
+        Set<Long> idsOfDeadlockedThreads = new HashSet<>();
+        String report = new DeadlockMonitor().findDeadlock(Collections.singletonList(t1), idsOfDeadlockedThreads);
+        assertThat(report, allOf(
+            startsWith("Detected 2 deadlocked threads:\nLock owner chain: "),
+            containsString("\"DeadlockMonitorTest-1\" waits for java.util.concurrent.locks.ReentrantLock"),
+            containsString("\"DeadlockMonitorTest-2\" waits for java.util.concurrent.locks.ReentrantLock"),
+            containsString("DeadlockMonitorTest.java:")
+        ));
+        assertThat(idsOfDeadlockedThreads, is(new HashSet<>(Arrays.asList(t1.getId(), t2.getId()))));
+    }
+
+    @Test(timeout = 5000)
+    public void test_findDeadlock_with_blocked_but_not_deadlocked_thread() throws Exception {
+        ReentrantLock lock = new ReentrantLock();
+        lock.lock();
+        try {
+            Thread t = new Thread(() -> {
+                lock.lock();
+                lock.unlock();
+            });
+            t.setDaemon(true);
+            t.start();
+            awaitQueued(t, lock);
+            Set<Long> idsOfDeadlockedThreads = new HashSet<>();
+            assertThat(new DeadlockMonitor().findDeadlock(Collections.singletonList(t), idsOfDeadlockedThreads), nullValue());
+            assertThat(idsOfDeadlockedThreads, empty());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_run() throws Exception {
+        DeadlockMonitor deadlockMonitor = new DeadlockMonitor();
+        Thread monitorThread = new Thread(deadlockMonitor, "DeadlockMonitorTest-monitor");
+        monitorThread.start();
+        try {
+            MultiException me1 = new MultiException();
+            DeadlockMonitor.Registration registration1 = deadlockMonitor.register(() -> Collections.singletonList(Thread.currentThread()), me1);
+            ReentrantLock lock1 = new ReentrantLock();
+            ReentrantLock lock2 = new ReentrantLock();
+            CountDownLatch latch = new CountDownLatch(2);
+            List<Thread> threads = new ArrayList<>();
+            threads.add(startThread("DeadlockMonitorTest-3", lock1, lock2, latch));
+            threads.add(startThread("DeadlockMonitorTest-4", lock2, lock1, latch));
+            MultiException me2 = new MultiException();
+            DeadlockMonitor.Registration registration2 = deadlockMonitor.register(() -> threads, me2);
+            while (!registration2.isDone()) {
+                Thread.sleep(10);
+            }
+            assertThat(me2.getMessage(), containsString("Detected 2 deadlocked threads:"));
+            assertThat(registration2.getIdsOfDeadlockedThreads(), hasSize(2));
+            assertFalse(registration1.isDone());
+            assertTrue(me1.isEmpty());
+            deadlockMonitor.unregister(registration1);
+        } finally {
+            monitorThread.interrupt();
+            monitorThread.join();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void test_small_values_are_exact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; ++value) {
+            histogram.recordValue(value);
+        }
+        assertThat(histogram.getTotalCount(), is(100L));
+        assertThat(histogram.getValueAtPercentile(50), is(50L));
+        assertThat(histogram.getValueAtPercentile(99), is(99L));
+        assertThat(histogram.getValueAtPercentile(100), is(100L));
+        assertThat(histogram.getMax(), is(100L));
+    }
+
+    @Test
+    public void test_relative_precision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1000; value <= 1000000000L; value = value * 3 / 2) {
+            LatencyHistogram h = new LatencyHistogram();
+            h.recordValue(value);
+            h.recordValue(value + 1);
+            long valueAtPercentile = h.getValueAtPercentile(50);
+            assertThat(valueAtPercentile, greaterThanOrEqualTo(value));
+            assertThat((double) valueAtPercentile, lessThanOrEqualTo(value * 1.01));
+            histogram.add(h);
+        }
+        assertThat(histogram.getValueAtPercentile(100), is(histogram.getMax()));
+    }
+
+    @Test
+    public void test_add() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        for (int i = 0; i < 99; ++i) {
+            h1.recordValue(10);
+        }
+        h2.recordValue(5000000);
+        h1.add(h2);
+        assertThat(h1.getTotalCount(), is(100L));
+        assertThat(h1.getValueAtPercentile(99), is(10L));
+        assertThat(h1.getValueAtPercentile(100), is(5000000L));
+        assertThat(h1.getMax(), is(5000000L));
+    }
+
+    @Test
+    public void test_buckets_are_allocated_lazily() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getNumAllocatedBuckets(), is(0));
+        // All values between 1 and 2 ms lie in the same bucket ...
+        for (long value = 1 << 20; value < 1 << 21; value += 1000) {
+            histogram.recordValue(value);
+        }
+        assertThat(histogram.getNumAllocatedBuckets(), is(1));
+        LatencyHistogram other = new LatencyHistogram();
+        other.recordValue(10);
+        histogram.add(other);
+        assertThat(histogram.getNumAllocatedBuckets(), is(2));
+        assertThat(histogram.getValueAtPercentile(0), is(10L));
+    }
+
+    @Test
+    public void test_empty_histogram_and_extreme_values() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+        histogram.recordValue(-1);
+        histogram.recordValue(Long.MAX_VALUE);
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+        assertThat(histogram.getMax(), is((1L << 40) - 1));
+        try {
+            histogram.getValueAtPercentile(101);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {}
+    }
+}
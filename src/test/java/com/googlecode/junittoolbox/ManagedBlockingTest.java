@@ -0,0 +1,87 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ManagedBlockingTest {
+
+    @Test
+    public void test_call_outside_of_fork_join_pool() throws Exception {
+        assertThat(ManagedBlocking.call(() -> "foo"), is("foo"));
+        try {
+            ManagedBlocking.call(() -> { throw new IllegalStateException("bar"); });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+            assertThat(expected.getMessage(), is("bar"));
+        }
+    }
+
+    @Test
+    public void test_blocked_worker_thread_is_compensated() throws Exception {
+        ForkJoinPool pool = new ParallelScheduler.TestForkJoinPool(1, "ManagedBlockingTest-");
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            ForkJoinTask<Boolean> blockingTask = pool.submit(() -> ManagedBlocking.call(() -> latch.await(5, SECONDS)));
+            // Without compensation, this task would not be executed before the blocking task is done ...
+            pool.submit(latch::countDown);
+            assertTrue(blockingTask.get(3, SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_number_of_compensating_worker_threads_is_limited() throws Exception {
+        ForkJoinPool pool = new ParallelScheduler.TestForkJoinPool(1, "ManagedBlockingTest-limited-");
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            for (int i = 0; i < 4; ++i) {
+                pool.submit(() -> ManagedBlocking.call(() -> latch.await(5, SECONDS)));
+            }
+            ManagedBlocking.sleep(200, MILLISECONDS);
+            long numWorkerThreads = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("ManagedBlockingTest-limited-")).count();
+            assertThat(numWorkerThreads, is(2L));
+            latch.countDown();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_blocking_call_is_executed_directly_if_the_pool_can_not_compensate() throws Exception {
+        ParallelScheduler.TestForkJoinPool pool = new ParallelScheduler.TestForkJoinPool(1, "ManagedBlockingTest-direct-");
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            CountDownLatch blocked = new CountDownLatch(2);
+            List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                tasks.add(pool.submit(() -> ManagedBlocking.call(() -> {
+                    blocked.countDown();
+                    return latch.await(5, SECONDS);
+                })));
+            }
+            // The first task is compensated, the second one is executed directly,
+            // because the pool must not start more than one additional worker thread ...
+            assertTrue(blocked.await(3, SECONDS));
+            assertThat(pool.blockedWorkers.get(), is(2));
+            assertThat(pool.workers.get(), is(2));
+            latch.countDown();
+            for (ForkJoinTask<Boolean> task : tasks) {
+                assertTrue(task.get(3, SECONDS));
+            }
+            assertThat(pool.blockedWorkers.get(), is(0));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.util.MultiException;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class MultithreadingTesterOptionsTest {
+
+    @Test(timeout = 5000)
+    public void test_continueOnFailure() {
+        AtomicInteger count = new AtomicInteger();
+        RunnableAssert ra = new RunnableAssert("fails every second time") {
+            @Override
+            public void run() {
+                if (count.incrementAndGet() % 2 == 0) {
+                    fail("even");
+                }
+            }
+        };
+        try {
+            new MultithreadingTester().numThreads(10)
+                                      .numRoundsPerThread(100)
+                                      .continueOnFailure(true)
+                                      .add(ra)
+                                      .run();
+            fail("MultiException expected");
+        } catch (MultiException expected) {
+            assertThat(count.get(), is(10 * 100));
+            assertThat(expected.size(), is(500L));
+            assertThat(expected.getMessage(), allOf(
+                startsWith("500 nested exceptions:"),
+                containsString("500\u00d7 java.lang.AssertionError: even")
+            ));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_runAndMeasure() {
+        CountingRunnableAssert ra1 = new CountingRunnableAssert();
+        RunnableAssert ra2 = new RunnableAssert("sleep") {
+            @Override
+            public void run() throws Exception {
+                Thread.sleep(1);
+            }
+        };
+        List<Measurement> measurements = new MultithreadingTester().numThreads(4)
+                                                                   .numRoundsPerThread(100)
+                                                                   .add(ra1, ra2)
+                                                                   .runAndMeasure();
+        assertThat(measurements.size(), is(2));
+        Measurement m1 = measurements.get(0);
+        assertThat(m1.getName(), is("RunnableAssert(CountingRunnableAssert)"));
+        assertThat(m1.getCount(), is(200L));
+        assertThat(m1.getOpsPerSecond(), greaterThan(0.0));
+        Measurement m2 = measurements.get(1);
+        assertThat(m2.getName(), is("RunnableAssert(sleep)"));
+        assertThat(m2.getCount(), is(200L));
+        long p50 = m2.getP50(TimeUnit.MICROSECONDS);
+        long p99 = m2.getP99(TimeUnit.MICROSECONDS);
+        long max = m2.getMax(TimeUnit.MICROSECONDS);
+        assertThat(p50, greaterThanOrEqualTo(1000L));
+        assertThat(p99, greaterThanOrEqualTo(p50));
+        assertThat(max, greaterThanOrEqualTo(p99));
+        // Each of the two threads executing ra2 sleeps at least 100 ms ...
+        assertThat(m2.getOpsPerSecond(), lessThanOrEqualTo(2000.0));
+        assertThat(m2.toString(), startsWith("RunnableAssert(sleep): 200 ops, "));
+    }
+
+    @Test(timeout = 5000)
+    public void test_runFor() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        long startTime = System.currentTimeMillis();
+        new MultithreadingTester().numThreads(4)
+                                  .runFor(300, TimeUnit.MILLISECONDS)
+                                  .add(ra)
+                                  .run();
+        long duration = System.currentTimeMillis() - startTime;
+        assertThat(duration, allOf(greaterThanOrEqualTo(300L), lessThan(2000L)));
+        // Way more rounds than the default 1000 rounds per thread ...
+        assertThat(ra.count.get(), greaterThan(4 * 1000));
+    }
+
+    @Test(timeout = 5000)
+    public void test_numRoundsTotal() {
+        CountingRunnableAssert ra1 = new CountingRunnableAssert();
+        CountingRunnableAssert ra2 = new CountingRunnableAssert();
+        new MultithreadingTester().numThreads(7)
+                                  .numRoundsTotal(12345)
+                                  .add(ra1, ra2)
+                                  .run();
+        assertThat(ra1.count.get() + ra2.count.get(), is(12345));
+    }
+
+    @Test(timeout = 5000)
+    public void test_runFor_and_numRoundsTotal() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        long startTime = System.currentTimeMillis();
+        new MultithreadingTester().numThreads(2)
+                                  .runFor(100, TimeUnit.MILLISECONDS)
+                                  .numRoundsTotal(Long.MAX_VALUE)
+                                  .add(ra)
+                                  .run();
+        assertThat(System.currentTimeMillis() - startTime, lessThan(2000L));
+        ra = new CountingRunnableAssert();
+        new MultithreadingTester().numThreads(2)
+                                  .runFor(1, TimeUnit.HOURS)
+                                  .numRoundsTotal(10)
+                                  .add(ra)
+                                  .run();
+        assertThat(ra.count.get(), is(10));
+    }
+
+    @Test(timeout = 5000)
+    public void test_reuseThreads() {
+        Set<Thread> threadsOfFirstRun = ConcurrentHashMap.newKeySet();
+        MultithreadingTester mt = new MultithreadingTester().numThreads(4)
+                                                            .numRoundsPerThread(1)
+                                                            .reuseThreads(true)
+                                                            .add(() -> { threadsOfFirstRun.add(Thread.currentThread()); });
+        mt.run();
+        assertThat(threadsOfFirstRun.size(), is(4));
+        for (Thread thread : threadsOfFirstRun) {
+            assertThat(thread.getName(), startsWith("MultithreadingTester-pool-"));
+        }
+        Set<Thread> threadsOfSecondRun = ConcurrentHashMap.newKeySet();
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        new MultithreadingTester().numThreads(4)
+                                  .numRoundsPerThread(10)
+                                  .reuseThreads(true)
+                                  .add(() -> {
+                                      assertThat(Thread.currentThread().getName(), startsWith("MultithreadingTester-worker-"));
+                                      threadsOfSecondRun.add(Thread.currentThread());
+                                      ra.run();
+                                  })
+                                  .run();
+        assertThat(ra.count.get(), is(40));
+        threadsOfSecondRun.retainAll(threadsOfFirstRun);
+        assertThat(threadsOfSecondRun, not(empty()));
+    }
+
+    @Test(timeout = 10000)
+    public void test_useVirtualThreads() throws Exception {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        AtomicInteger numVirtualThreads = new AtomicInteger();
+        Method isVirtual;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException ignored) {
+            isVirtual = null;
+        }
+        Method finalIsVirtual = isVirtual;
+        // Use less threads, if virtual threads are not supported ...
+        int numThreads = (isVirtual != null ? 10000 : 1000);
+        new MultithreadingTester().numThreads(numThreads)
+                                  .numRoundsPerThread(1)
+                                  .useVirtualThreads(true)
+                                  .add(() -> {
+                                      if (finalIsVirtual != null && (Boolean) finalIsVirtual.invoke(Thread.currentThread())) {
+                                          numVirtualThreads.incrementAndGet();
+                                      }
+                                      ra.run();
+                                      return null;
+                                  })
+                                  .run();
+        assertThat(ra.count.get(), is(numThreads));
+        if (isVirtual != null) {
+            assertThat(numVirtualThreads.get(), is(numThreads));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_targetRate() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        long startTime = System.currentTimeMillis();
+        Measurement m = new MultithreadingTester().numThreads(4)
+                                                  .numRoundsPerThread(100)
+                                                  .targetRate(2000)
+                                                  .add(ra)
+                                                  .runAndMeasure().get(0);
+        // 400 rounds at 2000 rounds per second should take about 200 ms ...
+        assertThat(System.currentTimeMillis() - startTime, greaterThanOrEqualTo(190L));
+        assertThat(m.getCount(), is(400L));
+        assertThat(m.getTargetOpsPerSecond(), is(2000.0));
+        assertThat(m.getOpsPerSecond(), allOf(greaterThan(1500.0), lessThan(2500.0)));
+        assertThat(m.getShortfall(), lessThan(0.25));
+        assertThat(m.toString(), containsString("(target: 2000.0 ops/s, shortfall: "));
+    }
+
+    @Test(timeout = 5000)
+    public void test_targetRate_with_slow_RunnableAssert() {
+        RunnableAssert ra = new RunnableAssert("sleep 10 ms") {
+            @Override
+            public void run() throws Exception {
+                Thread.sleep(10);
+            }
+        };
+        Measurement m = new MultithreadingTester().numThreads(2)
+                                                  .numRoundsPerThread(20)
+                                                  .targetRate(1000)
+                                                  .add(ra)
+                                                  .runAndMeasure().get(0);
+        // Each thread can only execute 100 rounds per second instead of the targeted 500 ...
+        assertThat(m.getShortfall(), greaterThan(0.5));
+        // The latency is measured from the scheduled start, so the
+        // last rounds have to wait more than 100 ms for their start ...
+        assertThat(m.getMax(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(100L));
+    }
+
+    @Test(timeout = 5000)
+    public void test_runFor_with_low_targetRate() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        long startTime = System.currentTimeMillis();
+        new MultithreadingTester().numThreads(20)
+                                  .targetRate(4)
+                                  .runFor(500, TimeUnit.MILLISECONDS)
+                                  .add(ra)
+                                  .run();
+        // Each thread would start its next round only after 5 seconds ...
+        assertThat(System.currentTimeMillis() - startTime, lessThan(2000L));
+        // Only the first 2 threads are scheduled to start a round within 500 ms ...
+        assertThat(ra.count.get(), lessThanOrEqualTo(3));
+    }
+
+    @Test(timeout = 5000)
+    public void test_that_deadlock_is_detected_when_threads_are_reused() {
+        Object lock1 = new Object();
+        Object lock2 = new Object();
+        CountDownLatch latch = new CountDownLatch(2);
+        try {
+            new MultithreadingTester().numThreads(2).numRoundsPerThread(1).reuseThreads(true).add(
+                () -> {
+                    synchronized (lock1) {
+                        latch.countDown();
+                        latch.await();
+                        synchronized (lock2) {
+                            fail("Reached unreachable statement.");
+                        }
+                    }
+                    return null;
+                },
+                () -> {
+                    synchronized (lock2) {
+                        latch.countDown();
+                        latch.await();
+                        synchronized (lock1) {
+                            fail("Reached unreachable statement.");
+                        }
+                    }
+                    return null;
+                }
+            ).run();
+            fail("RuntimeException expected");
+        } catch (RuntimeException expected) {
+            assertThat(expected.getMessage(), allOf(
+                containsString("Detected 2 deadlocked threads:\n"),
+                containsString("\"MultithreadingTester-worker-1\" waits for java.lang.Object@"),
+                containsString("\"MultithreadingTester-worker-2\" waits for java.lang.Object@")
+            ));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_stallTimeout() {
+        AtomicBoolean flag = new AtomicBoolean();
+        try {
+            new MultithreadingTester().numThreads(2).numRoundsPerThread(1000000).stallTimeout(200, TimeUnit.MILLISECONDS).add(() -> {
+                // Livelock: Each thread waits for the other thread to give way ...
+                while (!Thread.currentThread().isInterrupted()) {
+                    flag.set(!flag.get());
+                    Thread.yield();
+                }
+                return null;
+            }).run();
+            fail("RuntimeException expected");
+        } catch (RuntimeException expected) {
+            assertThat(expected.getMessage(), allOf(
+                containsString("Detected stall: None of 2 threads completed a round within 200 ms:\n\n"),
+                containsString("\"MultithreadingTester-worker-1\" "),
+                containsString("\"MultithreadingTester-worker-2\" "),
+                containsString("com.googlecode.junittoolbox.MultithreadingTesterOptionsTest.lambda$test_stallTimeout$")
+            ));
+        }
+    }
+
+    @Test
+    public void test_that_slow_rounds_are_no_stall() {
+        AtomicInteger count = new AtomicInteger();
+        new MultithreadingTester().numThreads(2).numRoundsPerThread(50).stallTimeout(200, TimeUnit.MILLISECONDS).add(() -> {
+            count.incrementAndGet();
+            Thread.sleep(10);
+            return null;
+        }).run();
+        assertThat(count.get(), is(100));
+    }
+
+    @Test
+    public void test_that_waiting_for_scheduled_rounds_is_no_stall() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        // Each thread starts a round every second, staggered by 500 ms ...
+        new MultithreadingTester().numThreads(2).numRoundsPerThread(2).targetRate(2).stallTimeout(200, TimeUnit.MILLISECONDS).add(ra).run();
+        assertThat(ra.count.get(), is(4));
+    }
+
+    @Test
+    public void test_randomizeInterleavings() {
+        CountingRunnableAssert ra = new CountingRunnableAssert();
+        new MultithreadingTester().numThreads(10).numRoundsPerThread(100).randomizeInterleavings().add(ra).run();
+        assertThat(ra.count.get(), is(1000));
+    }
+
+    @Test
+    public void test_that_seed_is_reported_if_randomized_run_fails() {
+        try {
+            new MultithreadingTester().numThreads(2).numRoundsPerThread(10).randomizeInterleavings(4711).add(() -> {
+                fail("Test failure");
+                return null;
+            }).run();
+            fail("MultiException expected");
+        } catch (MultiException expected) {
+            assertThat(expected.getMessage(), allOf(
+                containsString("java.lang.AssertionError: Test failure"),
+                containsString("use randomizeInterleavings(4711L) to reproduce")
+            ));
+        }
+    }
+
+    private class CountingRunnableAssert extends RunnableAssert {
+        protected AtomicInteger count = new AtomicInteger(0);
+
+        protected CountingRunnableAssert() {
+            super("CountingRunnableAssert");
+        }
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -6,10 +6,12 @@ import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite.SuiteClasses;
+import org.junit.runners.model.InitializationError;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.*;
 
 public class ParallelSuiteTest {
@@ -88,4 +90,117 @@ public class ParallelSuiteTest {
         assertTrue(result.wasSuccessful());
         assertEquals(6, result.getRunCount());
     }
+
+    @RunWith(ParallelSuite.class)
+    @SuiteClasses({ Test1.class, Test2.class })
+    @ParallelismConfig(threads = 3, pool = "ParallelSuiteTest-io")
+    public static class Example4 {}
+
+    @Test
+    public void test_ParallelismConfig() {
+        Result result = JUnitCore.runClasses(Example4.class);
+        assertTrue(result.wasSuccessful());
+        assertEquals(2, result.getRunCount());
+        assertNotSame(thread1, thread2);
+        assertThat(thread1.getName(), startsWith("JUnit-ParallelSuiteTest-io-"));
+        assertThat(thread2.getName(), startsWith("JUnit-ParallelSuiteTest-io-"));
+    }
+
+    @RunWith(ParallelRunner.class)
+    @ParallelismConfig(pool = "ParallelSuiteTest-b")
+    public static class TestInPoolB {
+        static volatile Thread thread;
+
+        @Test
+        public void test() {
+            thread = Thread.currentThread();
+        }
+    }
+
+    @RunWith(ParallelRunner.class)
+    @ParallelismConfig(pool = "ParallelSuiteTest-a")
+    public static class TestInPoolA {
+        static volatile Thread thread;
+
+        @Test
+        public void test() {
+            thread = Thread.currentThread();
+        }
+    }
+
+    @RunWith(ParallelSuite.class)
+    @SuiteClasses({ TestInPoolB.class })
+    @ParallelismConfig(pool = "ParallelSuiteTest-a")
+    public static class SuiteInPoolA {}
+
+    @RunWith(ParallelSuite.class)
+    @SuiteClasses({ TestInPoolA.class })
+    @ParallelismConfig(pool = "ParallelSuiteTest-b")
+    public static class SuiteInPoolB {}
+
+    @Test
+    public void test_ParallelismConfig_never_switches_back_into_an_enclosing_pool() {
+        Result result = JUnitCore.runClasses(SuiteInPoolA.class);
+        assertTrue(result.wasSuccessful());
+        assertThat(TestInPoolB.thread.getName(), startsWith("JUnit-ParallelSuiteTest-b-"));
+        result = JUnitCore.runClasses(SuiteInPoolB.class);
+        assertTrue(result.wasSuccessful());
+        // Switching from pool b into pool a might cause a deadlock, therefore TestInPoolA is executed in pool b ...
+        assertThat(TestInPoolA.thread.getName(), startsWith("JUnit-ParallelSuiteTest-b-"));
+    }
+
+    @ParallelismConfig(threads = 2, pool = "ParallelSuiteTest-c")
+    public static class PoolC1 {}
+
+    @ParallelismConfig(threads = 3, pool = "ParallelSuiteTest-c")
+    public static class PoolC2 {}
+
+    @Test(expected = InitializationError.class)
+    public void test_ParallelismConfig_with_different_number_of_threads_for_the_same_pool() throws Exception {
+        ParallelScheduler.forClass(PoolC1.class);
+        ParallelScheduler.forClass(PoolC2.class);
+    }
+
+    @ParallelismConfig(pool = "ParallelSuiteTest-d")
+    public static class PoolD1 {}
+
+    @ParallelismConfig(threads = 10000, pool = "ParallelSuiteTest-d")
+    public static class PoolD2 {}
+
+    @ParallelismConfig(threads = 10000, pool = "ParallelSuiteTest-e")
+    public static class PoolE1 {}
+
+    @ParallelismConfig(pool = "ParallelSuiteTest-e")
+    public static class PoolE2 {}
+
+    @Test
+    public void test_that_the_default_number_of_threads_conflicts_regardless_of_the_order() throws Exception {
+        ParallelScheduler.forClass(PoolD1.class);
+        try {
+            ParallelScheduler.forClass(PoolD2.class);
+            fail("InitializationError expected");
+        } catch (InitializationError expected) {}
+        ParallelScheduler.forClass(PoolE1.class);
+        try {
+            ParallelScheduler.forClass(PoolE2.class);
+            fail("InitializationError expected");
+        } catch (InitializationError expected) {}
+    }
+
+    @RunWith(ParallelSuite.class)
+    @SuiteClasses({ Test1.class, Test2.class, ParallelRunnerTest.Example.class })
+    @ParallelismConfig(virtualThreads = true, threads = 4, pool = "ParallelSuiteTest-virtual")
+    public static class Example5 {}
+
+    @Test
+    public void test_ParallelismConfig_with_virtualThreads() {
+        // Note: If virtual threads are not supported by the JVM, a fork join pool is used instead ...
+        Result result = JUnitCore.runClasses(Example5.class);
+        assertTrue(result.wasSuccessful());
+        assertEquals(4, result.getRunCount());
+        assertNotSame(thread1, thread2);
+        assertThat(thread1.getName(), startsWith("JUnit-ParallelSuiteTest-virtual-"));
+        assertThat(thread2.getName(), startsWith("JUnit-ParallelSuiteTest-virtual-"));
+        assertNotSame(ParallelRunnerTest.Example.thread1, ParallelRunnerTest.Example.thread2);
+    }
 }
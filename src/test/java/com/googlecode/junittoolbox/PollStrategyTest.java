@@ -0,0 +1,61 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PollStrategyTest {
+
+    @Test
+    public void test_fixed() {
+        PollStrategy pollStrategy = PollStrategy.fixed(50, MILLISECONDS);
+        assertThat(pollStrategy.getPollIntervalNanos(1), is(50000000L));
+        assertThat(pollStrategy.getPollIntervalNanos(1000), is(50000000L));
+    }
+
+    @Test
+    public void test_exponential() {
+        PollStrategy pollStrategy = PollStrategy.exponential(100, 1000, MICROSECONDS);
+        assertThat(pollStrategy.getPollIntervalNanos(1), is(100000L));
+        assertThat(pollStrategy.getPollIntervalNanos(2), is(200000L));
+        assertThat(pollStrategy.getPollIntervalNanos(3), is(400000L));
+        assertThat(pollStrategy.getPollIntervalNanos(4), is(800000L));
+        assertThat(pollStrategy.getPollIntervalNanos(5), is(1000000L));
+        assertThat(pollStrategy.getPollIntervalNanos(100), is(1000000L));
+        assertThat(pollStrategy.getPollIntervalNanos(Integer.MAX_VALUE), is(1000000L));
+    }
+
+    @Test
+    public void test_fibonacci() {
+        PollStrategy pollStrategy = PollStrategy.fibonacci(100, 1000, MICROSECONDS);
+        assertThat(pollStrategy.getPollIntervalNanos(1), is(100000L));
+        assertThat(pollStrategy.getPollIntervalNanos(2), is(100000L));
+        assertThat(pollStrategy.getPollIntervalNanos(3), is(200000L));
+        assertThat(pollStrategy.getPollIntervalNanos(4), is(300000L));
+        assertThat(pollStrategy.getPollIntervalNanos(5), is(500000L));
+        assertThat(pollStrategy.getPollIntervalNanos(6), is(800000L));
+        assertThat(pollStrategy.getPollIntervalNanos(7), is(1000000L));
+        assertThat(pollStrategy.getPollIntervalNanos(Integer.MAX_VALUE), is(1000000L));
+    }
+
+    @Test
+    public void test_spinThenSleep() {
+        PollStrategy pollStrategy = PollStrategy.spinThenSleep(2, 10, MILLISECONDS);
+        assertThat(pollStrategy.getPollIntervalNanos(1), is(0L));
+        assertThat(pollStrategy.getPollIntervalNanos(2), is(0L));
+        assertThat(pollStrategy.getPollIntervalNanos(3), is(10000000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_exponential_with_invalid_maxInterval() {
+        PollStrategy.exponential(10, 5, MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_fibonacci_with_invalid_initialInterval() {
+        PollStrategy.fibonacci(0, 5, MILLISECONDS);
+    }
+}
@@ -0,0 +1,78 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class PollingWaitStatisticsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_toCsv() {
+        PollingWaitStatistics statistics = new PollingWaitStatistics(new File("unused.csv"));
+        statistics.record("a", 3, 2000000, 1500000, false);
+        statistics.record("a", 5, 4000000, 3000000, false);
+        statistics.record("b", 100, 30000000, 25000000, true);
+        assertThat(statistics.toCsv(), is(
+            "callSite,calls,timeouts,polls,totalTimeMicros,maxTimeToSuccessMicros,waitTimeMicros\n" +
+            "\"b\",1,1,100,30000,0,25000\n" +
+            "\"a\",2,0,8,6000,4000,4500\n"
+        ));
+    }
+
+    @Test
+    public void test_toJson() {
+        PollingWaitStatistics statistics = new PollingWaitStatistics(new File("unused.json"));
+        statistics.record("com.example.FooTest.test(FooTest.java:42) \"quoted\"", 3, 2000000, 1500000, false);
+        assertThat(statistics.toJson(), is(
+            "[\n" +
+            "  {\"callSite\": \"com.example.FooTest.test(FooTest.java:42) \\\"quoted\\\"\", \"calls\": 1, \"timeouts\": 0, \"polls\": 3, " +
+                "\"totalTimeMicros\": 2000, \"maxTimeToSuccessMicros\": 2000, \"waitTimeMicros\": 1500}\n" +
+            "]\n"
+        ));
+    }
+
+    @Test
+    public void test_write() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "stats/polling-waits.csv");
+        PollingWaitStatistics statistics = new PollingWaitStatistics(file);
+        statistics.record("a", 1, 1000, 0, false);
+        statistics.write();
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is(statistics.toCsv()));
+    }
+
+    @Test
+    public void test_that_write_merges_statistics_of_several_JVMs() throws Exception {
+        for (String fileName : new String[] { "polling-waits.csv", "polling-waits.json" }) {
+            File file = new File(temporaryFolder.getRoot(), fileName);
+            PollingWaitStatistics statistics1 = new PollingWaitStatistics(file);
+            statistics1.record("a \"quoted\"", 3, 2000000, 1500000, false);
+            statistics1.record("b", 100, 30000000, 25000000, true);
+            statistics1.write();
+            PollingWaitStatistics statistics2 = new PollingWaitStatistics(file);
+            statistics2.record("a \"quoted\"", 5, 4000000, 3000000, false);
+            statistics2.write();
+            PollingWaitStatistics expected = new PollingWaitStatistics(file);
+            expected.record("a \"quoted\"", 3, 2000000, 1500000, false);
+            expected.record("b", 100, 30000000, 25000000, true);
+            expected.record("a \"quoted\"", 5, 4000000, 3000000, false);
+            String expectedContent = (fileName.endsWith(".csv") ? expected.toCsv() : expected.toJson());
+            assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is(expectedContent));
+        }
+    }
+
+    @Test
+    public void test_that_nothing_is_recorded_if_disabled() {
+        PollingWaitStatistics statistics = new PollingWaitStatistics(null);
+        assertFalse(statistics.isEnabled());
+    }
+}
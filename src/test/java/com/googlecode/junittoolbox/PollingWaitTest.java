@@ -4,10 +4,19 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.hamcrest.Matchers.*;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -98,6 +107,232 @@ public class PollingWaitTest {
         assertTrue(assertionErrorCaught);
     }
 
+    @Test
+    public void test_pollStrategy() throws Exception {
+        RunnableAssert runnableAssert = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).
+        doThrow(new Exception("bar")).
+        doThrow(new Exception("abc")).
+        doNothing().
+        when(runnableAssert).run();
+        PollingWait wait = spy(new PollingWait());
+        wait.pollStrategy(PollStrategy.spinThenSleep(2, 5, MILLISECONDS)).until(runnableAssert);
+        // The first two retries only yield ...
+        verify(wait, times(1)).sleep(anyLong());
+    }
+
+    @Test(timeout = 5000)
+    public void test_wakeUpOn_WakeupSignal() throws Exception {
+        WakeupSignal signal = new WakeupSignal();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            done.set(true);
+            signal.signal();
+        });
+        thread.start();
+        // Without the signal, the second attempt would start after a minute ...
+        new PollingWait().pollEvery(1, TimeUnit.MINUTES).timeoutAfter(2, TimeUnit.MINUTES).wakeUpOn(signal).until(done::get);
+        thread.join();
+    }
+
+    @Test(timeout = 5000)
+    public void test_wakeUpOn_CompletableFuture() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            future.complete("foo");
+        });
+        thread.start();
+        new PollingWait().pollEvery(1, TimeUnit.MINUTES).timeoutAfter(2, TimeUnit.MINUTES).wakeUpOn(future).until(future::isDone);
+        thread.join();
+    }
+
+    @Test(timeout = 5000)
+    public void test_wakeUpOn_CompletableFuture_and_WakeupSignal() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        WakeupSignal sharedSignal = new WakeupSignal();
+        long generation = sharedSignal.getGeneration();
+        PollingWait wait = new PollingWait().pollEvery(1, TimeUnit.MINUTES).timeoutAfter(2, TimeUnit.MINUTES);
+        // The later call of wakeUpOn(WakeupSignal) must not replace the CompletableFuture ...
+        wait.wakeUpOn(future).wakeUpOn(sharedSignal);
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            future.complete("foo");
+        });
+        thread.start();
+        wait.until(future::isDone);
+        thread.join();
+        // Completing the CompletableFuture must not signal the shared WakeupSignal ...
+        assertThat(sharedSignal.getGeneration(), is(generation));
+    }
+
+    @Test(timeout = 5000)
+    public void test_that_a_shared_WakeupSignal_does_not_collect_listeners() throws Exception {
+        WakeupSignal sharedSignal = new WakeupSignal();
+        PollingWait wait = new PollingWait().pollEvery(1, MILLISECONDS).timeoutAfter(10, MILLISECONDS).wakeUpOn(sharedSignal);
+        wait.until(sharedSignal::hasListeners);
+        assertFalse(sharedSignal.hasListeners());
+        try {
+            wait.until(() -> false);
+            fail("AssertionError expected");
+        } catch (AssertionError expected) {}
+        assertFalse(sharedSignal.hasListeners());
+        wait.untilAsync(sharedSignal::hasListeners).get();
+        assertFalse(sharedSignal.hasListeners());
+        CompletableFuture<Void> future = wait.timeoutAfter(1, TimeUnit.MINUTES).untilAsync(() -> false);
+        future.cancel(false);
+        assertFalse(sharedSignal.hasListeners());
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAsync() throws Exception {
+        RunnableAssert runnableAssert = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).
+        doThrow(new Exception("bar")).
+        doNothing().
+        when(runnableAssert).run();
+        PollingWait wait = spy(new PollingWait());
+        wait.pollEvery(5, MILLISECONDS).untilAsync(runnableAssert).get();
+        verify(runnableAssert, times(3)).run();
+        // The attempts are scheduled, the wait does not sleep ...
+        verify(wait, never()).sleep(anyLong());
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAsync_with_timeout() throws Exception {
+        CompletableFuture<Void> future = new PollingWait().pollEvery(1, MILLISECONDS).timeoutAfter(10, MILLISECONDS).untilAsync(() -> false);
+        try {
+            future.get();
+            fail("ExecutionException expected");
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause(), instanceOf(AssertionError.class));
+            assertThat(expected.getCause().getMessage(), containsString("did not succeed within 10 ms"));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_many_concurrent_untilAsync_calls() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        WakeupSignal signal = new WakeupSignal();
+        PollingWait wait = new PollingWait().pollEvery(1, TimeUnit.MINUTES).timeoutAfter(2, TimeUnit.MINUTES).wakeUpOn(signal);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[1000];
+        for (int i = 0; i < futures.length; ++i) {
+            futures[i] = wait.untilAsync(done::get);
+        }
+        done.set(true);
+        signal.signal();
+        CompletableFuture.allOf(futures).get();
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAll() throws Exception {
+        RunnableAssert runnableAssert1 = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).
+        doNothing().
+        when(runnableAssert1).run();
+        RunnableAssert runnableAssert2 = mock(RunnableAssert.class);
+        doThrow(new Exception("bar")).
+        doThrow(new Exception("bar")).
+        doNothing().
+        when(runnableAssert2).run();
+        new PollingWait().pollEvery(5, MILLISECONDS).untilAll(runnableAssert1, runnableAssert2);
+        // Succeeded RunnableAsserts are not executed again ...
+        verify(runnableAssert1, times(2)).run();
+        verify(runnableAssert2, times(3)).run();
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAll_reports_all_failed_RunnableAsserts() throws Exception {
+        RunnableAssert ok = mock(RunnableAssert.class);
+        RunnableAssert failing1 = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).when(failing1).run();
+        RunnableAssert failing2 = mock(RunnableAssert.class);
+        doThrow(new Exception("bar")).when(failing2).run();
+        try {
+            new PollingWait().pollEvery(1, MILLISECONDS).timeoutAfter(10, MILLISECONDS).untilAll(ok, failing1, failing2);
+            fail("AssertionError expected");
+        } catch (AssertionError expected) {
+            assertThat(expected.getMessage(), allOf(
+                startsWith("2 of 3 RunnableAsserts did not succeed:"),
+                containsString("java.lang.Exception: foo"),
+                containsString("java.lang.Exception: bar")
+            ));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAll_with_blocking_RunnableAsserts() throws Exception {
+        // Each RunnableAssert blocks until all of them are executed concurrently,
+        // which is only possible, if the attempts are not limited to a few threads ...
+        int n = 10;
+        CyclicBarrier barrier = new CyclicBarrier(n);
+        List<RunnableAssert> runnableAsserts = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            runnableAsserts.add(new RunnableAssert("all RunnableAsserts are executed concurrently") {
+                @Override
+                public void run() throws Exception {
+                    barrier.await(1, TimeUnit.SECONDS);
+                }
+            });
+        }
+        new PollingWait().pollEvery(5, MILLISECONDS).timeoutAfter(2, TimeUnit.SECONDS).untilAll(runnableAsserts);
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAny() throws Exception {
+        RunnableAssert failing = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).when(failing).run();
+        RunnableAssert ok = mock(RunnableAssert.class);
+        doThrow(new Exception("bar")).
+        doNothing().
+        when(ok).run();
+        new PollingWait().pollEvery(5, MILLISECONDS).timeoutAfter(1, TimeUnit.MINUTES).untilAny(failing, ok);
+        verify(ok, times(2)).run();
+    }
+
+    @Test(timeout = 5000)
+    public void test_untilAny_reports_all_failed_RunnableAsserts() throws Exception {
+        RunnableAssert failing1 = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).when(failing1).run();
+        RunnableAssert failing2 = mock(RunnableAssert.class);
+        doThrow(new Exception("bar")).when(failing2).run();
+        try {
+            new PollingWait().pollEvery(1, MILLISECONDS).timeoutAfter(10, MILLISECONDS).untilAny(asList(failing1, failing2));
+            fail("AssertionError expected");
+        } catch (AssertionError expected) {
+            assertThat(expected.getMessage(), allOf(
+                startsWith("None of 2 RunnableAsserts succeeded:"),
+                containsString("java.lang.Exception: foo"),
+                containsString("java.lang.Exception: bar")
+            ));
+        }
+    }
+
+    @Test
+    public void test_statistics() throws Exception {
+        RunnableAssert runnableAssert = mock(RunnableAssert.class);
+        doThrow(new Exception("foo")).
+        doNothing().
+        when(runnableAssert).run();
+        PollingWait wait = new PollingWait().pollEvery(5, MILLISECONDS);
+        wait.statistics = new PollingWaitStatistics(new File("unused.csv"));
+        wait.until(runnableAssert);
+        assertThat(wait.statistics.toCsv(), allOf(
+            containsString("\"com.googlecode.junittoolbox.PollingWaitTest.test_statistics(PollingWaitTest.java:"),
+            containsString(")\",1,0,2,")
+        ));
+    }
+
     private SleepAnswerBuilder sleep(long timeAmount, TimeUnit timeUnit) {
         return new SleepAnswerBuilder(timeUnit.toMillis(timeAmount));
     }
@@ -0,0 +1,100 @@
+package com.googlecode.junittoolbox;
+
+import com.googlecode.junittoolbox.samples.AllTests;
+import com.googlecode.junittoolbox.samples.LoginBeanTest;
+import com.googlecode.junittoolbox.samples.frontend.FillOutFormFrontendTest;
+import com.googlecode.junittoolbox.samples.frontend.LoginFrontendTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.internal.requests.ClassRequest;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Runner;
+import org.junit.runners.model.InitializationError;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.googlecode.junittoolbox.TestHelper.getChildren;
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TestShardTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final List<String> CLASS_NAMES = asList("a.A", "a.B", "a.C", "b.D", "b.E");
+
+    @Test
+    public void test_parse() throws Exception {
+        assertThat(TestShard.parse("3/12").toString(), is("3/12"));
+        for (String invalid : new String[] { "0/12", "13/12", "3", "3/", "a/b", "1/0" }) {
+            try {
+                TestShard.parse(invalid);
+                fail("InitializationError expected for \"" + invalid + "\"");
+            } catch (InitializationError expected) {}
+        }
+    }
+
+    @Test
+    public void test_shards_by_class_count() throws Exception {
+        TimingHistory timingHistory = new TimingHistory(null);
+        assertThat(TestShard.parse("1/2").select(CLASS_NAMES, timingHistory), containsInAnyOrder("a.A", "a.C", "b.E"));
+        assertThat(TestShard.parse("2/2").select(CLASS_NAMES, timingHistory), containsInAnyOrder("a.B", "b.D"));
+    }
+
+    @Test
+    public void test_shards_by_duration() throws Exception {
+        TimingHistory timingHistory = new TimingHistory(new File(temporaryFolder.getRoot(), "history.bin"));
+        timingHistory.record("a.A", 100);
+        timingHistory.record("test1(a.B)", 30);
+        timingHistory.record("test2(a.B)", 30);
+        timingHistory.record("a.C", 50);
+        timingHistory.record("b.D", 40);
+        timingHistory.flush();
+        // The expected duration of b.E is the average duration (62), therefore
+        // the classes are distributed like this: a.A (100) + a.C (50) = 150
+        // and b.E (62) + a.B (60) + b.D (40) = 162 ...
+        assertThat(TestShard.parse("1/2").select(CLASS_NAMES, timingHistory), containsInAnyOrder("a.A", "a.C"));
+        assertThat(TestShard.parse("2/2").select(CLASS_NAMES, timingHistory), containsInAnyOrder("b.E", "a.B", "b.D"));
+    }
+
+    @Test
+    public void test_shards_do_not_overlap_and_have_no_gaps() throws Exception {
+        TimingHistory timingHistory = new TimingHistory(null);
+        for (int total = 1; total <= 7; ++total) {
+            Set<String> all = new HashSet<>();
+            int n = 0;
+            for (int index = 1; index <= total; ++index) {
+                Set<String> selected = TestShard.parse(index + "/" + total).select(CLASS_NAMES, timingHistory);
+                n += selected.size();
+                all.addAll(selected);
+            }
+            assertThat(n, is(CLASS_NAMES.size()));
+            assertThat(all, containsInAnyOrder(CLASS_NAMES.toArray()));
+        }
+    }
+
+    @Test
+    public void test_that_non_test_classes_are_not_sharded() throws Exception {
+        // The wildcard pattern of AllTests also matches NotATest, which must not be
+        // dealt out to one of the shards, otherwise one of the three shards is empty ...
+        assertNull(System.getProperty("testShard"));
+        List<Class<?>> testClasses = new ArrayList<>();
+        try {
+            for (int i = 1; i <= 3; ++i) {
+                System.setProperty("testShard", i + "/3");
+                Runner runner = ClassRequest.aClass(AllTests.class).getRunner();
+                assertThat(getChildren(runner).size(), is(1));
+                testClasses.add(((Runner) getChildren(runner).iterator().next()).getDescription().getTestClass());
+            }
+        } finally {
+            System.clearProperty("testShard");
+        }
+        assertThat(testClasses, containsInAnyOrder(LoginBeanTest.class, FillOutFormFrontendTest.class, LoginFrontendTest.class));
+    }
+}
@@ -0,0 +1,142 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TimingHistoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Description describe(String name) {
+        return Description.createSuiteDescription(name);
+    }
+
+    @Test
+    public void test_flush_and_read() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "timings/history.bin");
+        TimingHistory timingHistory1 = new TimingHistory(file);
+        timingHistory1.record("a", 1000);
+        timingHistory1.record("b", 2000);
+        timingHistory1.flush();
+        timingHistory1.record("a", 3000);
+        timingHistory1.flush();
+        TimingHistory timingHistory2 = TimingHistory.read(file);
+        assertThat(timingHistory2.getKeys(), contains("a", "b"));
+        assertThat(timingHistory2.getNumSamples("a"), is(2));
+        assertThat(timingHistory2.getMovingAverageInNanos("a"), is(2000L));
+        assertThat(timingHistory2.getMovingAverageInNanos("b"), is(2000L));
+        assertThat(timingHistory2.getMovingAverageInNanos("c"), is(-1L));
+    }
+
+    @Test
+    public void test_only_the_last_samples_are_kept() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "history.bin");
+        TimingHistory timingHistory1 = new TimingHistory(file);
+        for (int i = 1; i <= 3 * TimingHistory.MAX_SAMPLES_PER_KEY; ++i) {
+            timingHistory1.record("a", i);
+            timingHistory1.flush();
+        }
+        long sizeBeforeCompaction = file.length();
+        TimingHistory timingHistory2 = TimingHistory.read(file);
+        assertThat(timingHistory2.getNumSamples("a"), is(TimingHistory.MAX_SAMPLES_PER_KEY));
+        assertThat(timingHistory2.getPercentileInNanos("a", 0), is(2L * TimingHistory.MAX_SAMPLES_PER_KEY + 1));
+        assertThat(timingHistory2.getPercentileInNanos("a", 100), is(3L * TimingHistory.MAX_SAMPLES_PER_KEY));
+        assertThat(file.length(), lessThan(sizeBeforeCompaction));
+        assertThat(TimingHistory.read(file).getMovingAverageInNanos("a"), is(timingHistory2.getMovingAverageInNanos("a")));
+    }
+
+    @Test
+    public void test_several_instances_sharing_a_file() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "history.bin");
+        AtomicInteger count = new AtomicInteger();
+        new MultithreadingTester().numThreads(8).numRoundsPerThread(5).add(() -> {
+            TimingHistory timingHistory = new TimingHistory(file);
+            timingHistory.load();
+            timingHistory.record("a" + count.incrementAndGet() % 4, 42);
+            timingHistory.flush();
+        }).run();
+        TimingHistory timingHistory = TimingHistory.read(file);
+        assertThat(timingHistory.getKeys(), contains("a0", "a1", "a2", "a3"));
+        assertThat(timingHistory.getNumSamples("a0"), is(10));
+    }
+
+    @Test
+    public void test_corrupt_file_is_replaced() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "history.bin");
+        Files.write(file.toPath(), "Not a timing history".getBytes("UTF-8"));
+        TimingHistory timingHistory1 = TimingHistory.read(file);
+        assertTrue(timingHistory1.isEmpty());
+        timingHistory1.record("a", 1000);
+        timingHistory1.flush();
+        assertThat(TimingHistory.read(file).getMovingAverageInNanos("a"), is(1000L));
+    }
+
+    @Test
+    public void test_percentile() {
+        TimingHistory timingHistory = new TimingHistory(new File(temporaryFolder.getRoot(), "history.bin"));
+        for (long duration : new long[] { 50, 10, 40, 20, 30 }) {
+            timingHistory.record("a", duration);
+        }
+        timingHistory.flush();
+        assertThat(timingHistory.getPercentileInNanos("a", 50), is(30L));
+        assertThat(timingHistory.getPercentileInNanos("a", 90), is(50L));
+        assertThat(timingHistory.getPercentileInNanos("a", 0), is(10L));
+    }
+
+    @Test
+    public void test_concurrent_recording() {
+        File file = new File(temporaryFolder.getRoot(), "history.bin");
+        TimingHistory timingHistory = new TimingHistory(file);
+        new MultithreadingTester().numRoundsPerThread(10).add(() -> timingHistory.record("a", 42)).run();
+        timingHistory.flush();
+        assertThat(timingHistory.getNumSamples("a"), is(TimingHistory.MAX_SAMPLES_PER_KEY));
+        assertThat(TimingHistory.read(file).getMovingAverageInNanos("a"), is(42L));
+    }
+
+    @Test
+    public void test_disabled_TimingHistory_does_not_record_anything() {
+        TimingHistory timingHistory = new TimingHistory(null);
+        timingHistory.record("a", 1000);
+        timingHistory.flush();
+        assertTrue(timingHistory.isEmpty());
+    }
+
+    @Test
+    public void test_keyOf() {
+        assertThat(TimingHistory.keyOf("Foo", Description.createTestDescription(TimingHistoryTest.class, "test")),
+                   is("test(" + TimingHistoryTest.class.getName() + ")"));
+        assertThat(TimingHistory.keyOf("Foo", describe("[0]")), is("Foo/[0]"));
+    }
+
+    @Test
+    public void test_longestFirst() {
+        TimingHistory timingHistory = new TimingHistory(new File(temporaryFolder.getRoot(), "history.bin"));
+        timingHistory.record("Foo/short", 10);
+        timingHistory.record("Foo/medium1", 20);
+        timingHistory.record("Foo/long", 30);
+        timingHistory.record("Foo/medium2", 20);
+        timingHistory.flush();
+        List<String> children = asList("short", "medium1", "unknown", "long", "medium2");
+        List<String> ordered = ParallelScheduler.longestFirst("Foo", children, TimingHistoryTest::describe, timingHistory);
+        assertThat(ordered, contains("unknown", "long", "medium1", "medium2", "short"));
+    }
+
+    @Test
+    public void test_longestFirst_keeps_declaration_order_without_timing_history() {
+        List<String> children = asList("b", "a", "c");
+        List<String> ordered = ParallelScheduler.longestFirst("Foo", children, TimingHistoryTest::describe, new TimingHistory(null));
+        assertThat(ordered, contains("b", "a", "c"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.junit.runners.model.InitializationError;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class WaitBudgetContextTest {
+
+    @WaitBudget(time = 1, unit = TimeUnit.MINUTES, failFastAfterTimeouts = 2)
+    private static class Outer {}
+
+    @WaitBudget(time = 1, unit = TimeUnit.HOURS)
+    private static class Inner {}
+
+    @WaitBudget(time = 1, unit = TimeUnit.SECONDS)
+    private static class ShortInner {}
+
+    @Test
+    public void test_nested_contexts() {
+        WaitBudgetContext outer = new WaitBudgetContext(Outer.class, Outer.class.getAnnotation(WaitBudget.class), null);
+        WaitBudgetContext inner = new WaitBudgetContext(Inner.class, Inner.class.getAnnotation(WaitBudget.class), outer);
+        WaitBudgetContext shortInner = new WaitBudgetContext(ShortInner.class, ShortInner.class.getAnnotation(WaitBudget.class), outer);
+        // A nested class can only shorten the deadline ...
+        assertThat(inner.getDeadline(), is(outer.getDeadline()));
+        assertThat(inner.describeDeadline(), is("@WaitBudget on class " + Outer.class.getName()));
+        assertThat(shortInner.getDeadline() - outer.getDeadline(), lessThan(0L));
+        assertThat(shortInner.describeDeadline(), is("@WaitBudget on class " + ShortInner.class.getName()));
+        // ... and inherits the circuit breaker ...
+        assertTrue(inner.hasCircuitBreaker());
+        inner.recordTimeout("foo");
+        assertFalse(outer.isCircuitOpen("foo"));
+        shortInner.recordTimeout("foo");
+        assertTrue(outer.isCircuitOpen("foo"));
+        assertFalse(outer.isCircuitOpen("bar"));
+        inner.recordSuccess("foo");
+        assertFalse(outer.isCircuitOpen("foo"));
+    }
+
+    @Test
+    public void test_wrap() {
+        WaitBudgetContext context = new WaitBudgetContext(Outer.class, Outer.class.getAnnotation(WaitBudget.class), null);
+        WaitBudgetContext[] current = new WaitBudgetContext[1];
+        WaitBudgetContext.wrap(context, () -> current[0] = WaitBudgetContext.current()).run();
+        assertThat(current[0], sameInstance(context));
+        assertThat(WaitBudgetContext.current(), nullValue());
+    }
+
+    @RunWith(ParallelRunner.class)
+    @WaitBudget(time = 200, unit = TimeUnit.MILLISECONDS)
+    public static class DeadlineExample {
+        private final PollingWait wait = new PollingWait().timeoutAfter(30, SECONDS).pollEvery(10, MILLISECONDS);
+
+        @Test
+        public void test1() {
+            wait.until(() -> false);
+        }
+
+        @Test
+        public void test2() {
+            wait.until(() -> false);
+        }
+
+        @Test
+        public void test3() {
+            wait.until(() -> false);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void test_deadline() {
+        Result result = JUnitCore.runClasses(DeadlineExample.class);
+        assertThat(result.getFailureCount(), is(3));
+        for (Failure failure : result.getFailures()) {
+            assertThat(failure.getMessage(), containsString("did not succeed before the deadline of @WaitBudget on class " + DeadlineExample.class.getName()));
+        }
+    }
+
+    private static final List<String> messages = new CopyOnWriteArrayList<>();
+
+    @RunWith(ParallelRunner.class)
+    @WaitBudget(failFastAfterTimeouts = 2)
+    public static class CircuitBreakerExample {
+        private final PollingWait wait = new PollingWait().timeoutAfter(50, MILLISECONDS).pollEvery(10, MILLISECONDS);
+
+        @Test
+        public void test() {
+            for (int i = 0; i < 4; ++i) {
+                try {
+                    wait.until(() -> false);
+                } catch (AssertionError e) {
+                    messages.add(e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void test_circuit_breaker() {
+        messages.clear();
+        Result result = JUnitCore.runClasses(CircuitBreakerExample.class);
+        assertTrue(result.wasSuccessful());
+        assertThat(messages.size(), is(4));
+        assertThat(messages.get(0), containsString("did not succeed within 50 ms"));
+        assertThat(messages.get(1), containsString("did not succeed within 50 ms"));
+        assertThat(messages.get(2), containsString("did not succeed -- failed fast, because of previous timeouts at " + CircuitBreakerExample.class.getName() + ".test("));
+        assertThat(messages.get(3), containsString("(see @WaitBudget(failFastAfterTimeouts = 2) on class " + CircuitBreakerExample.class.getName() + ")"));
+    }
+
+    @RunWith(ParallelRunner.class)
+    @WaitBudget(time = -1)
+    public static class InvalidExample {
+        @Test
+        public void test() {}
+    }
+
+    @Test
+    public void test_invalid_WaitBudget() {
+        try {
+            ParallelScheduler.forClass(InvalidExample.class);
+            fail("InitializationError expected");
+        } catch (InitializationError expected) {
+            assertThat(expected.getCauses().get(0).getMessage(), startsWith("Invalid @WaitBudget(time = -1)"));
+        }
+    }
+}
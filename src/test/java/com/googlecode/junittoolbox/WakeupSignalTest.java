@@ -0,0 +1,52 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class WakeupSignalTest {
+
+    @Test
+    public void test_signal_increments_generation() {
+        WakeupSignal signal = new WakeupSignal();
+        long generation = signal.getGeneration();
+        signal.signal();
+        assertThat(signal.getGeneration(), is(generation + 1));
+    }
+
+    @Test(timeout = 5000)
+    public void test_await_returns_immediately_if_signaled_before() throws Exception {
+        WakeupSignal signal = new WakeupSignal();
+        long generation = signal.getGeneration();
+        signal.signal();
+        signal.await(generation, TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test(timeout = 5000)
+    public void test_await_returns_when_signaled() throws Exception {
+        WakeupSignal signal = new WakeupSignal();
+        long generation = signal.getGeneration();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            signal.signal();
+        });
+        thread.start();
+        signal.await(generation, TimeUnit.MINUTES.toNanos(1));
+        assertThat(signal.getGeneration(), is(generation + 1));
+        thread.join();
+    }
+
+    @Test
+    public void test_await_with_timeout() throws Exception {
+        WakeupSignal signal = new WakeupSignal();
+        long startTime = System.nanoTime();
+        signal.await(signal.getGeneration(), TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(System.nanoTime() - startTime, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.googlecode.junittoolbox;
+
+import org.junit.Test;
+import org.junit.runners.model.InitializationError;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class WildcardPatternMatcherTest {
+
+    private final File classesDir = new File("/tmp/project/target/test-classes");
+
+    private WildcardPatternMatcher matcher(String baseDir, String... wildcardPatterns) throws Exception {
+        return new WildcardPatternMatcher(classesDir, new File(classesDir, baseDir), wildcardPatterns);
+    }
+
+    @Test
+    public void test_directories_which_can_not_match_are_pruned() throws Exception {
+        WildcardPatternMatcher matcher = matcher("com/example", "frontend/**/*Test.class");
+        assertTrue(matcher.shouldVisit(""));
+        assertTrue(matcher.shouldVisit("com"));
+        assertTrue(matcher.shouldVisit("com/example"));
+        assertTrue(matcher.shouldVisit("com/example/frontend"));
+        assertTrue(matcher.shouldVisit("com/example/frontend/gui/login"));
+        assertFalse(matcher.shouldVisit("com/example/backend"));
+        assertFalse(matcher.shouldVisit("org"));
+    }
+
+    @Test
+    public void test_excluded_directories_are_pruned() throws Exception {
+        WildcardPatternMatcher matcher = matcher("", "**/*Test.class", "!gui/**");
+        assertTrue(matcher.shouldVisit("frontend"));
+        assertFalse(matcher.shouldVisit("gui"));
+        assertFalse(matcher.shouldVisit("gui/login"));
+    }
+
+    @Test
+    public void test_all_patterns_are_matched_in_one_pass() throws Exception {
+        WildcardPatternMatcher matcher = matcher("com/example", "*Test.class", "../other/*Test.class", "!Slow*.class");
+        for (String path : new String[] { "com/example/ATest.class", "com/example/SlowTest.class", "com/example/sub/BTest.class", "com/other/CTest.class", "com/example/Helper.class" }) {
+            matcher.visitClassFile(path);
+        }
+        assertThat(matcher.getMatchingClassFiles(), contains("com/example/ATest.class", "com/other/CTest.class"));
+        assertFalse(matcher.shouldVisit("com/example/sub"));
+        assertTrue(matcher.shouldVisit("com/other"));
+    }
+
+    @Test
+    public void test_base_dir_above_classes_dir() throws Exception {
+        WildcardPatternMatcher matcher = matcher("../..", "target/test-classes/**/*Test.class", "target/classes/**/*.class");
+        assertTrue(matcher.shouldVisit("com"));
+        matcher.visitClassFile("com/ATest.class");
+        assertThat(matcher.getMatchingClassFiles(), contains("com/ATest.class"));
+    }
+
+    @Test(expected = InitializationError.class)
+    public void test_invalid_pattern() throws Exception {
+        matcher("", "**/*Test");
+    }
+}
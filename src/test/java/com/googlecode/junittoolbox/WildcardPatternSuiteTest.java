@@ -9,12 +9,15 @@ import org.junit.Test;
 import org.junit.internal.requests.ClassRequest;
 import org.junit.runner.Runner;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import static com.googlecode.junittoolbox.TestHelper.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertNull;
 
 public class WildcardPatternSuiteTest {
 
@@ -70,4 +73,35 @@ public class WildcardPatternSuiteTest {
         assertThat(children2.size(), is(1));
         assertThat(children2, hasItemWithTestMethod("fastTest"));
     }
+
+    @Test
+    public void test_SlowFrontendTests_sample() throws Exception {
+        Runner runner = ClassRequest.aClass(SlowFrontendTests.class).getRunner();
+        Collection<?> children1 = getChildren(runner);
+        assertThat(children1.size(), is(1));
+        assertThat(children1, hasItemWithTestClass(LoginFrontendTest.class));
+        final Runner loginFrontendTestRunner = (Runner) children1.iterator().next();
+        Collection<?> children2 = getChildren(loginFrontendTestRunner);
+        assertThat(children2.size(), is(1));
+        assertThat(children2, hasItemWithTestMethod("slowTest"));
+    }
+
+    @Test
+    public void test_sharded_AllTests_sample() throws Exception {
+        assertNull(System.getProperty("testShard"));
+        List<Class<?>> testClasses = new ArrayList<>();
+        try {
+            for (int i = 1; i <= 2; ++i) {
+                System.setProperty("testShard", i + "/2");
+                Runner runner = ClassRequest.aClass(AllTests.class).getRunner();
+                for (Object child : getChildren(runner)) {
+                    testClasses.add(((Runner) child).getDescription().getTestClass());
+                }
+                assertThat(getChildren(runner).size(), is(i == 1 ? 2 : 1));
+            }
+        } finally {
+            System.clearProperty("testShard");
+        }
+        assertThat(testClasses, containsInAnyOrder(LoginBeanTest.class, FillOutFormFrontendTest.class, LoginFrontendTest.class));
+    }
 }
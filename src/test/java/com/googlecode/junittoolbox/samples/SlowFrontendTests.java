@@ -0,0 +1,18 @@
+package com.googlecode.junittoolbox.samples;
+
+import com.googlecode.junittoolbox.SuiteClasses;
+import com.googlecode.junittoolbox.WildcardPatternSuite;
+import com.googlecode.junittoolbox.WildcardPatternSuiteTest;
+import com.googlecode.junittoolbox.samples.frontend.LoginFrontendTest;
+import org.junit.experimental.categories.Categories.IncludeCategory;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * For {@link WildcardPatternSuiteTest}.
+ */
+@RunWith(WildcardPatternSuite.class)
+@Suite.SuiteClasses(LoginFrontendTest.class)
+@SuiteClasses("frontend/FillOutFormFrontendTest.class")
+@IncludeCategory(SlowTests.class)
+public class SlowFrontendTests {}
@@ -132,4 +132,107 @@ public class MultiExceptionTest {
             assertThat(expected.getMessage(), startsWith("100000 nested exceptions"));
         }
     }
+
+    @Test
+    public void test_exceptions_with_same_signature_are_counted() {
+        MultiException me = new MultiException();
+        for (int i = 0; i < 3; ++i) {
+            try { f(); } catch (IOException e) { me.add(e); }
+            try { g(); } catch (SQLException e) { me.add(e); }
+        }
+        assertThat(me.size(), is(6L));
+        String message = me.getMessage();
+        assertThat(message, allOf(
+            startsWith("6 nested exceptions:"),
+            containsString("3\u00d7 java.io.IOException: foo"),
+            containsString("3\u00d7 java.sql.SQLException: bar")
+        ));
+        assertThat(countOccurrences("IOException", message), is(1));
+    }
+
+    @Test
+    public void test_exceptions_with_same_stack_trace_but_different_messages_have_same_signature() {
+        MultiException me = new MultiException();
+        for (int i = 1; i <= 2; ++i) {
+            me.add(new IllegalStateException("round " + i));
+        }
+        assertThat(me.getMessage(), allOf(
+            startsWith("2 nested exceptions:"),
+            containsString("2\u00d7 java.lang.IllegalStateException: round 1"),
+            not(containsString("round 2"))
+        ));
+    }
+
+    @Test
+    public void test_number_of_signatures_is_limited() throws Exception {
+        MultiException me = new MultiException();
+        // Create exceptions with different stack traces by throwing them at different recursion depths ...
+        for (int depth = 0; depth < MultiException.MAX_SIGNATURES + 10; ++depth) {
+            me.add(createExceptionAtDepth(depth));
+        }
+        assertThat(me.size(), is(MultiException.MAX_SIGNATURES + 10L));
+        String message = me.getFullMessage();
+        assertThat(message, allOf(
+            startsWith((MultiException.MAX_SIGNATURES + 10) + " nested exceptions:"),
+            containsString("10 exceptions with more than " + MultiException.MAX_SIGNATURES + " different signatures omitted")
+        ));
+        assertThat(countOccurrences("1\u00d7 java.lang.Exception", message), is(MultiException.MAX_SIGNATURES));
+    }
+
+    private Exception createExceptionAtDepth(int depth) {
+        return depth == 0 ? new Exception() : createExceptionAtDepth(depth - 1);
+    }
+
+    @Test
+    public void test_add_MultiException() {
+        MultiException me = new MultiException();
+        for (int i = 0; i < 2; ++i) {
+            me.add(setUpMultiExceptionWithTwoNestedExceptions());
+        }
+        assertThat(me.size(), is(4L));
+        assertThat(me.getMessage(), allOf(
+            startsWith("4 nested exceptions:"),
+            containsString("2\u00d7 java.io.IOException: foo"),
+            containsString("2\u00d7 java.sql.SQLException: bar")
+        ));
+    }
+
+    @Test
+    public void test_rendered_message_is_limited() throws Exception {
+        MultiException me = new MultiException();
+        for (int depth = 0; depth < 5; ++depth) {
+            me.add(createExceptionAtDepth(depth));
+        }
+        String message = me.render(2, Integer.MAX_VALUE);
+        assertThat(countOccurrences("1\u00d7 java.lang.Exception", message), is(2));
+        assertThat(message, containsString("3 other signatures not shown, see getFullMessage()"));
+        message = me.render(Integer.MAX_VALUE, 200);
+        assertThat(countOccurrences("1\u00d7 java.lang.Exception", message), is(1));
+        assertThat(message, allOf(
+            startsWith("5 nested exceptions:"),
+            containsString("\n\t...\n"),
+            containsString("4 other signatures not shown, see getFullMessage()")
+        ));
+        assertThat(countOccurrences("1\u00d7 java.lang.Exception", me.getFullMessage()), is(5));
+    }
+
+    @Test
+    public void test_getMessage_is_cached_until_another_exception_is_added() {
+        MultiException me = setUpMultiExceptionWithTwoNestedExceptions();
+        String message = me.getMessage();
+        assertSame(message, me.getMessage());
+        me.add(new IOException("xyz"));
+        assertThat(me.getMessage(), allOf(
+            startsWith("3 nested exceptions:"),
+            containsString("xyz")
+        ));
+    }
+
+    private static int countOccurrences(String s, String text) {
+        int n = 0;
+        for (int i = text.indexOf(s); i >= 0; i = text.indexOf(s, i + s.length())) {
+            ++n;
+        }
+        return n;
+    }
 }
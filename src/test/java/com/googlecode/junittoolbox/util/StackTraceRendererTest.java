@@ -0,0 +1,47 @@
+package com.googlecode.junittoolbox.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class StackTraceRendererTest {
+
+    @Test
+    public void test_appendStackTrace() {
+        Exception e = new IOException("foo", new IllegalStateException("bar"));
+        StringWriter sw = new StringWriter();
+        e.printStackTrace(new PrintWriter(sw));
+        String expected = "1st error: " + sw.toString().replace(System.lineSeparator(), "\n").replace("\n", "\n\t").trim();
+        StackTraceRenderer renderer = new StackTraceRenderer(Integer.MAX_VALUE);
+        renderer.append("1st error: ").appendStackTrace(e);
+        assertThat(renderer.toString(), is(expected));
+        assertFalse(renderer.isTruncated());
+    }
+
+    @Test
+    public void test_max_length() {
+        StackTraceRenderer renderer = new StackTraceRenderer(100);
+        renderer.append("error: ").appendStackTrace(new IOException("foo"));
+        assertTrue(renderer.isTruncated());
+        String s = renderer.toString(" [truncated]");
+        assertThat(s, startsWith("error: java.io.IOException: foo\n\t\tat "));
+        assertThat(s, endsWith(" [truncated]"));
+        assertThat(s.length(), is(100 + " [truncated]".length()));
+        // Nothing is appended after the renderer has been truncated ...
+        renderer.append("xyz");
+        assertThat(renderer.toString(""), not(containsString("xyz")));
+    }
+
+    @Test
+    public void test_invalid_max_length() {
+        try {
+            new StackTraceRenderer(0);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {}
+    }
+}